@@ -0,0 +1,152 @@
+package server;
+
+import server.messages.HelloMessage;
+import server.messages.MessageCodec;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * Load generator comparing the connection modes of the server. It starts a
+ * server in this process, opens the given number of connections and keeps
+ * them open, and reports the resident memory and threads they cost and the
+ * time from connecting to the server's first message, the reply to hello.
+ * The clients only hold sockets, so the memory is nearly all the server's.
+ *
+ *     ant compile-bench
+ *     java -Xmx256m -cp build/classes:build/bench/classes \
+ *             server.ConnectionBenchmark thread 5000
+ *
+ * The mode is nio, thread or virtual; virtual threads need Java 21.
+ */
+public class ConnectionBenchmark {
+
+    private final static int WARMUP = 500;
+
+    public static void main(String[] args) throws Exception {
+        final String mode = args.length > 0 ? args[0] : "virtual";
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        final int port = args.length > 2 ? Integer.parseInt(args[2]) : 8901;
+
+        PrintStream out = System.out;
+        // the server logs every connection
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+
+        final File dir = Files.createTempDirectory("benchmark").toFile();
+        final GameJournal journal = new GameJournal(dir);
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // no pings, the clients never answer them
+                new Server(port, mode, 100, new Authenticator(1, 16),
+                        new Heartbeat(3600000, 3600000), journal);
+            }
+        }, "server");
+        server.setDaemon(true);
+        server.start();
+        waitForServer(port);
+
+        ArrayList<Socket> sockets = new ArrayList<>();
+        for (int i = 0; i < WARMUP; i++) {
+            sockets.add(connect(port, new long[1], 0));
+        }
+        closeAll(sockets);
+        Thread.sleep(2000);
+        System.gc();
+        long rssBefore = status("VmRSS");
+        long threadsBefore = status("Threads");
+
+        long[] latencies = new long[count];
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            sockets.add(connect(port, latencies, i));
+        }
+        long elapsed = System.nanoTime() - start;
+        Thread.sleep(2000);
+        System.gc();
+        long rss = status("VmRSS") - rssBefore;
+        long threads = status("Threads") - threadsBefore;
+        closeAll(sockets);
+
+        Arrays.sort(latencies);
+        out.println("mode " + mode + " on Java "
+                + System.getProperty("java.version"));
+        out.println("connections " + count + " in " + elapsed / 1000000
+                + " ms");
+        out.println("rss " + rss / 1024 + " MB, " + rss / count
+                + " kB per connection");
+        out.println("threads " + threads);
+        out.println("first message p50 " + latencies[count / 2] / 1000
+                + " us, p99 " + latencies[count * 99 / 100] / 1000
+                + " us, max " + latencies[count - 1] / 1000 + " us");
+
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+        System.exit(0);
+    }
+
+    // connects and waits for the reply to hello, which the server sends first
+    private static Socket connect(int port, long[] latencies, int index)
+            throws IOException {
+        long start = System.nanoTime();
+        Socket socket = new Socket("localhost", port);
+        socket.getOutputStream().write(MessageCodec.frame(
+                new HelloMessage(MessageCodec.VERSION), false));
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        in.readFully(new byte[in.readInt()]);
+        latencies[index] = System.nanoTime() - start;
+        return socket;
+    }
+
+    private static void waitForServer(int port) throws InterruptedException {
+        while (true) {
+            try {
+                new Socket("localhost", port).close();
+                return;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static void closeAll(ArrayList<Socket> sockets) {
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        sockets.clear();
+    }
+
+    // a field of /proc/self/status, memory in kB
+    private static long status(String field) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new FileReader("/proc/self/status"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(field + ":")) {
+                    return Long.parseLong(line.substring(field.length() + 1)
+                            .replace("kB", "").trim());
+                }
+            }
+        }
+        return 0;
+    }
+}
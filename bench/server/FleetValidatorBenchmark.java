@@ -0,0 +1,107 @@
+package server;
+
+import model.Board;
+import model.Ship;
+import model.Square;
+
+/*
+ * Microbenchmark of FleetValidator against the check it replaced, which
+ * placed a copy of the fleet on a new Board and compared every square.
+ * The old check is kept here as it was so the two can still be compared.
+ *
+ *     ant compile-bench
+ *     java -cp build/classes:build/bench/classes \
+ *             server.FleetValidatorBenchmark [iterations]
+ */
+public class FleetValidatorBenchmark {
+
+    private final static int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0])
+                : 1000000;
+
+        Board valid = new Board(true);
+        // x, y and whether vertical, in the order of the fleet
+        int[][] placement = {{0, 0, 0}, {0, 2, 0}, {0, 4, 0}, {9, 0, 1},
+                {0, 6, 0}, {7, 7, 1}};
+        int i = 0;
+        for (Ship ship : valid.getShips()) {
+            ship.setVertical(placement[i][2] == 1);
+            valid.placeShip(ship, placement[i][0], placement[i][1]);
+            i++;
+        }
+        Board unplaced = new Board(true);
+
+        System.out.println("valid board: old " + isValidOld(valid)
+                + ", new " + FleetValidator.isValid(valid));
+        System.out.println("unplaced board: old " + isValidOld(unplaced)
+                + ", new " + FleetValidator.isValid(unplaced));
+
+        // the first rounds are warm up, the last one is the result
+        int accepted = 0;
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int j = 0; j < iterations; j++) {
+                if (isValidOld(valid)) {
+                    accepted++;
+                }
+            }
+            long old = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int j = 0; j < iterations; j++) {
+                if (FleetValidator.isValid(valid)) {
+                    accepted++;
+                }
+            }
+            long validator = System.nanoTime() - start;
+            System.out.println("round " + round + ": Board check "
+                    + old / iterations + " ns/op, FleetValidator "
+                    + validator / iterations + " ns/op");
+        }
+        System.out.println(accepted + " boards accepted");
+    }
+
+    // Board.isValid before FleetValidator
+    private static boolean isValidOld(Board board) {
+        Board tempBoard = new Board(true);
+        for (Ship s : board.getShips()) {
+            if (s.getSquares().size() == 0) {
+                return false;
+            }
+            int[] tl = s.getTopLeft();
+            Ship tempBoardShip = findShipByType(tempBoard, s.getType());
+            tempBoardShip.setVertical(s.isVertical());
+            if (!tempBoard.placeShip(tempBoardShip, tl[0], tl[1])) {
+                return false;
+            }
+        }
+        return shipPlacementEquals(tempBoard, board);
+    }
+
+    private static boolean shipPlacementEquals(Board board, Board other) {
+        for (int y = 0; y < Board.BOARD_DIMENSION; ++y) {
+            for (int x = 0; x < Board.BOARD_DIMENSION; ++x) {
+                Square s1 = board.getSquare(x, y);
+                Square s2 = other.getSquare(x, y);
+                if ((s1.isShip() != s2.isShip())) {
+                    return false;
+                }
+                if (s1.getShip() != null && s2.getShip() != null
+                        && s1.getShip().getType() != s2.getShip().getType()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Ship findShipByType(Board board, Ship.Type type) {
+        for (Ship s : board.getShips()) {
+            if (s.getType() == type) {
+                return s;
+            }
+        }
+        return null;
+    }
+}
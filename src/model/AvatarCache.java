@@ -0,0 +1,75 @@
+package model;
+
+import server.messages.AvatarMessage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/*
+ * Avatars the client has seen, by hash. They are kept in memory and in a
+ * directory on disk, so each image is downloaded once across sessions.
+ * Files are named after their hash and checked against it when read back.
+ */
+public class AvatarCache {
+
+    private File directory;
+    private HashMap<String, byte[]> images;
+    private HashSet<String> requested;
+
+    public AvatarCache(File directory) {
+        this.directory = directory;
+        this.images = new HashMap<>();
+        this.requested = new HashSet<>();
+        directory.mkdirs();
+    }
+
+    public synchronized byte[] get(String hash) {
+        if (!AvatarMessage.isHash(hash)) {
+            return null;
+        }
+        byte[] image = images.get(hash);
+        if (image == null) {
+            File file = new File(directory, hash + ".png");
+            if (file.isFile()) {
+                try {
+                    image = Files.readAllBytes(file.toPath());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                if (image != null && hash.equals(AvatarMessage.hash(image))) {
+                    images.put(hash, image);
+                } else {
+                    image = null;
+                    file.delete();
+                }
+            }
+        }
+        return image;
+    }
+
+    public synchronized void put(String hash, byte[] image) {
+        if (!AvatarMessage.isHash(hash) || image == null
+                || !hash.equals(AvatarMessage.hash(image))) {
+            return;
+        }
+        images.put(hash, image);
+        try {
+            File temp = File.createTempFile(hash, ".tmp", directory);
+            Files.write(temp.toPath(), image);
+            Files.move(temp.toPath(), new File(directory, hash + ".png").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // true only the first time a hash that is not cached is asked for
+    public synchronized boolean shouldFetch(String hash) {
+        return get(hash) == null && AvatarMessage.isHash(hash)
+                && requested.add(hash);
+    }
+}
@@ -39,39 +39,22 @@ public class Board implements Serializable {
         this.changeListeners = new ArrayList<>();
     }
 
-    public void setupBoard(Board board,boolean isVisible){
+    // the ships of a watched player, sent once when watching starts
+    public void placeFleet(ArrayList<Ship> fleet) {
         synchronized (squares) {
-            for (int i = 0; i < BOARD_DIMENSION; ++i) {
-                for (int j = 0; j < BOARD_DIMENSION; ++j) {
-                    squares[j][i].setUp(board.getSquares()[j][i]);
+            for (Ship ship : fleet) {
+                ship.updateSquareReferences(this);
+                for (Square square : ship.getSquares()) {
+                    square.setShip(ship);
                 }
             }
         }
-        ships = board.getShips();
+        ships = fleet;
 
-        if(!ships.isEmpty() && isVisible)
-            for(Ship s: ships)
-                 firePropertyChange("sankShip", null, s);
+        for (Ship s : ships)
+            firePropertyChange("sankShip", null, s);
 
         firePropertyChange("newBoard", null, null);
-
-        this.printBoard(true);
-    }
-
-    public static boolean isValid(Board board) {
-        Board tempBoard = new Board(true);
-        for (Ship s : board.getShips()) {
-            if (s.getSquares().size() == 0) {
-                return false;
-            }
-            int[] tl = s.getTopLeft();
-            Ship tempBoardShip = tempBoard.findShipByType(s.getType());
-            tempBoardShip.setVertical(s.isVertical());
-            if (!tempBoard.placeShip(tempBoardShip, tl[0], tl[1])) {
-                return false;
-            }
-        }
-        return tempBoard.shipPlacementEquals(board);
     }
 
     public boolean isBoatPositionLocked() {
@@ -198,32 +181,6 @@ public class Board implements Serializable {
         }
     }
 
-    public boolean shipPlacementEquals(Board board) {
-        for (int y = 0; y < BOARD_DIMENSION; ++y) {
-            for (int x = 0; x < BOARD_DIMENSION; ++x) {
-                Square s1 = this.getSquare(x, y);
-                Square s2 = board.getSquare(x, y);
-                if ((s1.isShip() != s2.isShip())) {
-                    return false;
-                }
-                if (s1.getShip() != null && s2.getShip() != null
-                        && s1.getShip().getType() != s2.getShip().getType()) {
-                    return false;
-                }
-            }
-        }
-        return true;
-    }
-
-    private Ship findShipByType(Ship.Type type) {
-        for (Ship s : ships) {
-            if (s.getType() == type) {
-                return s;
-            }
-        }
-        return null;
-    }
-
     public boolean isSquareNearShip(Square square) {
         for (int x = square.getX() - 1; x <= square.getX() + 1; x++) {
             for (int y = square.getY() - 1; y <= square.getY() + 1; y++) {
@@ -4,11 +4,7 @@ import server.Game;
 import server.messages.*;
 import view.ClientView;
 
-import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
 
 public class Client extends Thread {
 
@@ -16,15 +12,16 @@ public class Client extends Thread {
     private Board opponentBoard;
     private ClientView view;
 
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
+    private volatile MessageStream stream;
 
     private String opponentName = "Player";
     private String myName = "player";
     private String FriendKey = null;
+    // moves seen of the game being played or watched
+    private int watchVersion = 0;
 
     public Client(ClientView clientView, Board ownBoard, Board opponentBoard,
-            ObjectOutputStream out, ObjectInputStream in) {
+            MessageStream stream) {
         this.ownBoard = ownBoard;
         this.opponentBoard = opponentBoard;
         this.view = clientView;
@@ -32,8 +29,7 @@ public class Client extends Thread {
         ownBoard.setClient(this);
         opponentBoard.setClient(this);
 
-        this.out = out;
-        this.in = in;
+        this.stream = stream;
     }
 
     @Override
@@ -41,7 +37,7 @@ public class Client extends Thread {
         super.run();
         Object input;
         try {
-            while ((input = in.readObject()) != null) {
+            while ((input = stream.read()) != null) {
                 parseInput(input);
             }
         } catch (IOException e) {
@@ -147,12 +143,22 @@ public class Client extends Thread {
             case NotificationMessage.REPEATED_MOVE:
                 view.addChatMessage("You cannot repeat a move.");
                 break;
+            case NotificationMessage.OPPONENT_RECONNECTING:
+                view.addChatMessage("Opponent lost connection, waiting for them to come back.");
+                break;
+            case NotificationMessage.OPPONENT_RECONNECTED:
+                view.addChatMessage("Opponent is back.");
+                break;
+            case NotificationMessage.SESSION_RESUMED:
+                view.addChatMessage("Reconnected.");
+                break;
             case NotificationMessage.OPPONENT_DISCONNECTED:
                 view.addChatMessage("Opponent disconnected.");
                 view.gameOverAction("You won!");
             }
         } else if (input instanceof MoveResponseMessage) {
             MoveResponseMessage move = (MoveResponseMessage) input;
+            watchVersion++;
             if (move.isOwnBoard()) {
                 ownBoard.applyMove(move);
             } else {
@@ -161,12 +167,13 @@ public class Client extends Thread {
         } else if (input instanceof ChatMessage) {
             ChatMessage chatMessage = (ChatMessage) input;
             view.addChatMessage("<b>" + chatMessage.getWho() + ":</b> " + chatMessage.getMessage());
-        }else if (input instanceof BoardMessage){
-            BoardMessage boards = (BoardMessage) input;
-            if(boards.getFriendBoard() != null)
-                this.ownBoard.setupBoard(boards.getFriendBoard(),true);
-            if(boards.getEnemyBoard() != null)
-                this.opponentBoard.setupBoard(boards.getEnemyBoard(),false);
+        }else if (input instanceof SpectatorSyncMessage){
+            SpectatorSyncMessage sync = (SpectatorSyncMessage) input;
+            if (sync.getFleet() != null)
+                this.ownBoard.placeFleet(sync.getFleet());
+            for (MoveResponseMessage move : sync.getMoves())
+                parseInput(move);
+            watchVersion = sync.getToVersion();
         }
 
 
@@ -177,8 +184,8 @@ public class Client extends Thread {
 
     public void askForWatchBoards(String key){
         try {
-            out.writeObject(new String[]{"join", "boards", key});
-            out.flush();
+            stream.write(new String[]{"join", "boards", key,
+                    String.valueOf(watchVersion)});
         }catch(Exception e){
             e.getStackTrace();
         }
@@ -186,9 +193,17 @@ public class Client extends Thread {
 
 
     public void sendBoard(Board board) throws IOException {
-        out.reset();
-        out.writeObject(board);
-        out.flush();
+        stream.write(board);
+    }
+
+    // moves seen so far, a resumed session continues from here
+    public int getVersion() {
+        return watchVersion;
+    }
+
+    // the connection was replaced after resuming the session
+    public void setStream(MessageStream stream) {
+        this.stream = stream;
     }
 
     public ClientView getView() {
@@ -197,13 +212,11 @@ public class Client extends Thread {
 
     public void sendChatMessage(String message) throws IOException {
         System.out.println(message);
-        out.writeObject(new ChatMessage(message,myName));
-        out.flush();
+        stream.write(new ChatMessage(message,myName));
     }
 
     public void sendMove(int x, int y) throws IOException {
-        out.writeObject(new MoveMessage(x, y));
-        out.flush();
+        stream.write(new MoveMessage(x, y));
     }
 
     public String getOpponentName() {
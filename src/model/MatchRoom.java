@@ -1,7 +1,10 @@
 package model;
 
-import server.messages.BoardMessage;
+import server.messages.AvatarMessage;
+import server.messages.HeartbeatMessage;
 import server.messages.MatchRoomListMessage;
+import server.messages.MatchRoomUpdateMessage;
+import server.messages.MessageStream;
 import server.messages.NotificationMessage;
 import view.ClientView;
 import view.InviteReceivedPane;
@@ -12,19 +15,33 @@ import java.awt.*;
 import java.io.*;
 import java.net.Socket;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 public class MatchRoom extends Thread {
 
+    // a little less than the server keeps a dropped player's seat
+    private final static long RESUME_WINDOW = 25000;
+    private final static long RECONNECT_DELAY = 1000;
+
     private MatchRoomView matchRoomView;
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
+    private volatile MessageStream stream;
     private volatile Client clientModel;
     private String key = "";
+    private String hostname;
+    private int port;
+    // a server silent for longer than this is taken for gone
+    private int heartbeatTimeout;
+    // lets a dropped connection rejoin the game it was in
+    private volatile String sessionToken;
     private String ownName;
     private volatile NameState nameState;
     private HashMap<String, InviteReceivedPane> inviteDialogs;
     private InviteSentPane inviteSentPane;
+    private HashMap<String, RoomListPlayer> matchRoomList = new HashMap<>();
+    private int listVersion = -1;
+    private AvatarCache avatars = new AvatarCache(new File(
+            System.getProperty("user.home"), ".battleships/avatars"));
 
     public MatchRoom(MatchRoomView matchRoomView) {
         this.matchRoomView = matchRoomView;
@@ -36,17 +53,15 @@ public class MatchRoom extends Thread {
                 InputStream inputStream = new FileInputStream("config.properties");
                 Properties properties = new Properties();
                 properties.load(inputStream);
-                String hostname = properties.getProperty("hostname");
+                hostname = properties.getProperty("hostname");
                 String portStr = properties.getProperty("port");
                 if (hostname == null || portStr == null) {
                     matchRoomView.showConfigFileError();
                 }
-                int port = Integer.parseInt(portStr);
-                Socket socket = new Socket(hostname, port);
-                out = new ObjectOutputStream(new BufferedOutputStream(
-                        socket.getOutputStream()));
-                in = new ObjectInputStream(socket.getInputStream());
-                out.flush();
+                port = Integer.parseInt(portStr);
+                heartbeatTimeout = Integer.parseInt(properties.getProperty(
+                        "heartbeat.timeout", "15000"));
+                stream = connect();
                 connected = true;
             } catch (FileNotFoundException e) {
                 matchRoomView.showConfigFileError();
@@ -63,33 +78,92 @@ public class MatchRoom extends Thread {
         this.start();
     }
 
+    private MessageStream connect() throws IOException {
+        Socket socket = new Socket(hostname, port);
+        socket.setTcpNoDelay(true);
+        // the server pings, so a read that times out means it is gone
+        socket.setSoTimeout(heartbeatTimeout);
+        MessageStream stream = new MessageStream(socket);
+        stream.hello();
+        return stream;
+    }
+
     @Override
     public void run() {
         super.run();
         Object input;
-        try {
-            while ((input = in.readObject()) != null) {
-                System.out.println(input);
-                if (clientModel != null) {
-                    clientModel.parseInput(input);
-                } else {
-                    parseInput(input);
+        while (true) {
+            try {
+                while ((input = stream.read()) != null) {
+                    if (input instanceof HeartbeatMessage) {
+                        HeartbeatMessage ping = (HeartbeatMessage) input;
+                        if (!ping.isReply()) {
+                            sendMessage(new HeartbeatMessage(ping.getSent(),
+                                    true));
+                        }
+                        continue;
+                    }
+                    System.out.println(input);
+                    int code = input instanceof NotificationMessage
+                            ? ((NotificationMessage) input).getCode() : 0;
+                    if (code == NotificationMessage.RESUME_FAILED) {
+                        matchRoomView.showLostConnectionError();
+                    } else if (clientModel != null
+                            && !(input instanceof AvatarMessage)
+                            && code != NotificationMessage.SESSION_TOKEN) {
+                        clientModel.parseInput(input);
+                    } else {
+                        parseInput(input);
+                    }
+                }
+                System.out.println("stopped");
+                return;
+            } catch (IOException e) {
+                if (!resumeSession()) {
+                    matchRoomView.showLostConnectionError();
+                    return;
                 }
+            } catch (ClassNotFoundException e) {
+                e.printStackTrace();
+                return;
             }
-            System.out.println("stopped");
-        } catch (IOException e) {
-            matchRoomView.showLostConnectionError();
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
         }
     }
 
+    /*
+     * Reconnects during a game and asks for the session back, sending the
+     * number of moves seen so only the missed ones are sent again.
+     */
+    private boolean resumeSession() {
+        Client client = clientModel;
+        if (client == null || sessionToken == null) {
+            return false;
+        }
+        long deadline = System.currentTimeMillis() + RESUME_WINDOW;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                MessageStream resumed = connect();
+                resumed.write(new String[]{"resume", sessionToken,
+                        String.valueOf(client.getVersion())});
+                stream = resumed;
+                client.setStream(resumed);
+                return true;
+            } catch (IOException e) {
+                try {
+                    Thread.sleep(RECONNECT_DELAY);
+                } catch (InterruptedException ie) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
     public void sendJoinFriend(String key, final String name) {
         try {
             System.out.println(name);
             if(!name.contains(" (in game)")) {
-                out.writeObject(new String[]{"join", "join", key});
-                out.flush();
+                stream.write(new String[]{"join", "join", key});
                 EventQueue.invokeLater(new Runnable() {
                     @Override
                     public void run() {
@@ -98,8 +172,7 @@ public class MatchRoom extends Thread {
                     }
                 });
             }else{
-                out.writeObject(new String[]{"join", "watch", key});
-                out.flush();
+                stream.write(new String[]{"join", "watch", key});
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -122,7 +195,7 @@ public class MatchRoom extends Thread {
     }
 
     public enum NameState {
-        WAITING, ACCEPTED, INVALID, TAKEN
+        WAITING, ACCEPTED, INVALID, TAKEN, BUSY
     }
 
     private void setNameState(NameState nameState) {
@@ -138,14 +211,39 @@ public class MatchRoom extends Thread {
 
     private void parseInput(Object input) {
         if (input instanceof MatchRoomListMessage) {
-            final HashMap<String, RoomListPlayer> matchRoomList = ((MatchRoomListMessage) input)
-                    .getMatchRoomList();
-            EventQueue.invokeLater(new Runnable() {
-                @Override
-                public void run() {
-                    matchRoomView.updateMatchRoomList(matchRoomList);
+            MatchRoomListMessage snapshot = (MatchRoomListMessage) input;
+            matchRoomList = snapshot.getMatchRoomList();
+            listVersion = snapshot.getVersion();
+            showMatchRoomList();
+        } else if (input instanceof MatchRoomUpdateMessage) {
+            MatchRoomUpdateMessage update = (MatchRoomUpdateMessage) input;
+            if (update.getFromVersion() != listVersion) {
+                // an update went missing, start again from a full list
+                if (update.getToVersion() > listVersion) {
+                    sendStringArray(new String[]{"join", "list"});
                 }
-            });
+                return;
+            }
+            for (String key : update.getRemoved()) {
+                matchRoomList.remove(key);
+            }
+            for (Map.Entry<String, RoomListPlayer> entry
+                    : update.getChanged().entrySet()) {
+                RoomListPlayer player = entry.getValue();
+                RoomListPlayer listed = matchRoomList.get(entry.getKey());
+                if (player.getAvatarHash() == null && listed != null) {
+                    player.setAvatarHash(listed.getAvatarHash());
+                }
+                matchRoomList.put(entry.getKey(), player);
+            }
+            listVersion = update.getToVersion();
+            showMatchRoomList();
+        } else if (input instanceof AvatarMessage) {
+            AvatarMessage avatar = (AvatarMessage) input;
+            if (avatar.getImage() != null) {
+                avatars.put(avatar.getHash(), avatar.getImage());
+                showMatchRoomList();
+            }
         } else if (input instanceof NotificationMessage) {
             NotificationMessage n = (NotificationMessage) input;
             switch (n.getCode()) {
@@ -162,6 +260,11 @@ public class MatchRoom extends Thread {
                 case NotificationMessage.NAME_ACCEPTED:
                     setNameState(NameState.ACCEPTED);
                     break;
+                case NotificationMessage.SESSION_TOKEN:
+                    if (n.getText().length == 1) {
+                        sessionToken = n.getText()[0];
+                    }
+                    break;
                 case NotificationMessage.NAME_TAKEN:
                     setNameState(NameState.TAKEN);
                     break;
@@ -169,6 +272,10 @@ public class MatchRoom extends Thread {
                 case NotificationMessage.PASSWORD_IS_INVALID:
                     setNameState(NameState.INVALID);
                     break;
+                case NotificationMessage.TOO_MANY_ATTEMPTS:
+                case NotificationMessage.SERVER_BUSY:
+                    setNameState(NameState.BUSY);
+                    break;
                 case NotificationMessage.NEW_JOIN_GAME_REQUEST:
                     final InviteReceivedPane dialog = new InviteReceivedPane(
                             n.getText()[0], n.getText()[1], this);
@@ -202,9 +309,24 @@ public class MatchRoom extends Thread {
         }
     }
 
+    private void showMatchRoomList() {
+        final HashMap<String, RoomListPlayer> list = new HashMap<>(matchRoomList);
+        for (RoomListPlayer player : list.values()) {
+            if (avatars.shouldFetch(player.getAvatarHash())) {
+                sendStringArray(new String[]{"avatar", player.getAvatarHash()});
+            }
+        }
+        EventQueue.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                matchRoomView.updateMatchRoomList(list);
+            }
+        });
+    }
+
     private void startGame(Object firstInput) {
         matchRoomView.setVisible(false);
-        ClientView clientView = new ClientView(this.out, this.in, this);
+        ClientView clientView = new ClientView(this.stream, this);
         clientModel = clientView.getModel();
         clientModel.parseInput(firstInput);
         clientModel.setSelfName(ownName);
@@ -214,6 +336,10 @@ public class MatchRoom extends Thread {
         return key;
     }
 
+    public AvatarCache getAvatars() {
+        return avatars;
+    }
+
     public void reopen() {
         if (clientModel != null) {
             this.clientModel.getView().dispose();
@@ -224,9 +350,12 @@ public class MatchRoom extends Thread {
     }
 
     public void sendStringArray(String[] array) {
+        sendMessage(array);
+    }
+
+    private void sendMessage(Object message) {
         try {
-            out.writeObject(array);
-            out.flush();
+            stream.write(message);
         } catch (IOException e) {
             e.printStackTrace();
         }
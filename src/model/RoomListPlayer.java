@@ -4,11 +4,11 @@ import java.io.Serializable;
 
 public class RoomListPlayer implements Serializable {
     private String name;
-    private String image;
+    private String avatarHash;
 
-    public RoomListPlayer(String name, String image) {
+    public RoomListPlayer(String name, String avatarHash) {
         this.name = name;
-        this.image = image;
+        this.avatarHash = avatarHash;
     }
 
     public String getName() {
@@ -19,11 +19,11 @@ public class RoomListPlayer implements Serializable {
         this.name = name;
     }
 
-    public String getImage() {
-        return image;
+    public String getAvatarHash() {
+        return avatarHash;
     }
 
-    public void setImage(String image) {
-        this.image = image;
+    public void setAvatarHash(String avatarHash) {
+        this.avatarHash = avatarHash;
     }
 }
@@ -3,11 +3,15 @@ package model;
 public class RoomPlayer {
     private String key;
     private String name;
-    private String avatar;
+    private String avatarHash;
+    // PNG bytes, null until the image has been fetched
+    private byte[] avatar;
 
-    public RoomPlayer(String key, String name, String avatar) {
+    public RoomPlayer(String key, String name, String avatarHash,
+            byte[] avatar) {
         this.key = key;
         this.name = name;
+        this.avatarHash = avatarHash;
         this.avatar = avatar;
     }
 
@@ -23,7 +27,11 @@ public class RoomPlayer {
         return this.name;
     }
 
-    public String getAvatar() {
+    public String getAvatarHash() {
+        return avatarHash;
+    }
+
+    public byte[] getAvatar() {
         return avatar;
     }
 }
@@ -49,7 +49,9 @@ public class Ship implements Serializable {
     }
 
     public void gotHit() {
-        health--;
+        if (health > 0) {
+            health--;
+        }
     }
 
     public boolean isSunk() {
@@ -94,6 +96,10 @@ public class Ship implements Serializable {
         public String getName() {
             return name;
         }
+
+        public int getLength() {
+            return length;
+        }
     }
 
     public void updateSquareReferences(Board board) {
@@ -20,14 +20,6 @@ public class Square implements Serializable {
         this.state = (ownBoard) ? State.NO_SHIP : State.UNKNOWN;
         this.changeListeners = new ArrayList<>();
     }
-    public void setUp(Square s) {
-        this.ship = s.getShip();
-        this.guessed = s.getGuess();
-        this.x = s.getX();
-        this.y = s.getY();
-        this.state = s.getState();
-    }
-
     public boolean isShip() {
         return (ship != null);
     }
@@ -45,26 +37,31 @@ public class Square implements Serializable {
         return guessed;
     }
 
+    // a square only damages its ship the first time it is guessed
     public void setGuessed(boolean b) {
-        if (ship != null)
+        if (b && !guessed && ship != null)
             ship.gotHit();
         guessed = b;
     }
 
     public boolean guess() {
+        boolean first = !guessed;
         guessed = true;
         if (ship != null) {
-            ship.gotHit();
+            if (first) {
+                ship.gotHit();
+            }
             return true;
         }
         return false;
     }
 
     public void update(boolean hit, Ship shipSunk) {
+        boolean first = !this.guessed;
         this.guessed = true;
         if (this.state == State.UNKNOWN) {
             this.state = (hit) ? State.CONTAINS_SHIP : State.NO_SHIP;
-        } else if (this.ship != null) {
+        } else if (this.ship != null && first) {
             ship.gotHit();
         }
         if (this.ship == null) {
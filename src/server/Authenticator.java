@@ -0,0 +1,212 @@
+package server;
+
+import server.messages.NotificationMessage;
+
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Logins and registrations hash the password, which is slow on purpose, so
+ * they run on a small pool of their own instead of the connection threads.
+ * The queue in front of the pool is bounded: when it is full the attempt is
+ * refused with SERVER_BUSY rather than piling up behind a login storm. An
+ * address gets a limited number of attempts per minute, and an account that
+ * fails too often from one address is locked for that address for a while;
+ * both answer TOO_MANY_ATTEMPTS. The lock is not account wide, otherwise
+ * anyone could keep any player out by guessing wrong every 30 seconds.
+ */
+public class Authenticator {
+
+    private final static long WINDOW_MILLIS = 60000;
+    private final static int ADDRESS_ATTEMPTS = 30;
+    private final static long LOCKOUT_MILLIS = 30000;
+    private final static int ACCOUNT_FAILURES = 5;
+    private final static long REPORT_MILLIS = 60000;
+
+    private ThreadPoolExecutor pool;
+    private ConcurrentHashMap<String, Window> addresses;
+    private ConcurrentHashMap<String, Window> accounts;
+    private AtomicLong completed;
+    private AtomicLong failed;
+    private AtomicLong rejected;
+    private AtomicLong throttled;
+    private AtomicLong abandoned;
+    private long lastReported;
+
+    public interface Task {
+        // true if the password matched or the account was created
+        boolean authenticate();
+    }
+
+    public Authenticator(int threads, int queueSize) {
+        final AtomicInteger count = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r,
+                                "auth-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        this.addresses = new ConcurrentHashMap<>();
+        this.accounts = new ConcurrentHashMap<>();
+        this.completed = new AtomicLong();
+        this.failed = new AtomicLong();
+        this.rejected = new AtomicLong();
+        this.throttled = new AtomicLong();
+        this.abandoned = new AtomicLong();
+        TimerService.getInstance().schedule(new ReportTask(), REPORT_MILLIS);
+    }
+
+    // false if the attempt was refused, the player has then been told why
+    public boolean submit(final Player player, final String account,
+            final Task task) {
+        final String address = player.getAddress();
+        final String key = address + " " + account;
+        long now = System.currentTimeMillis();
+        if (!window(addresses, address).add(now, WINDOW_MILLIS,
+                ADDRESS_ATTEMPTS)
+                || window(accounts, key).reached(now, LOCKOUT_MILLIS,
+                ACCOUNT_FAILURES)) {
+            throttled.incrementAndGet();
+            player.writeNotification(NotificationMessage.TOO_MANY_ATTEMPTS);
+            return false;
+        }
+        try {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // nobody is waiting for the answer any more
+                    if (!player.isConnected()) {
+                        abandoned.incrementAndGet();
+                        return;
+                    }
+                    // counted before the answer goes out, so a retry that
+                    // follows it at once already sees this failure
+                    window(accounts, key).add(System.currentTimeMillis(),
+                            LOCKOUT_MILLIS, ACCOUNT_FAILURES);
+                    if (task.authenticate()) {
+                        accounts.remove(key);
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                    completed.incrementAndGet();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            player.writeNotification(NotificationMessage.SERVER_BUSY);
+            return false;
+        }
+    }
+
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    public long getAbandonedCount() {
+        return abandoned.get();
+    }
+
+    private static Window window(ConcurrentHashMap<String, Window> windows,
+            String key) {
+        Window window = windows.get(key);
+        if (window == null) {
+            Window created = new Window();
+            window = windows.putIfAbsent(key, created);
+            if (window == null) {
+                window = created;
+            }
+        }
+        return window;
+    }
+
+    private static void prune(ConcurrentHashMap<String, Window> windows,
+            long now, long length) {
+        Iterator<Window> iterator = windows.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expired(now, length)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // counts events in a fixed window that starts with the first of them
+    private static class Window {
+
+        private long start;
+        private int count;
+
+        // false once the event is over the limit
+        synchronized boolean add(long now, long length, int limit) {
+            if (expired(now, length)) {
+                start = now;
+                count = 0;
+            }
+            return ++count <= limit;
+        }
+
+        synchronized boolean reached(long now, long length, int limit) {
+            return !expired(now, length) && count >= limit;
+        }
+
+        synchronized boolean expired(long now, long length) {
+            return now - start >= length;
+        }
+    }
+
+    // logs the pool and throttle counters and drops windows that ran out
+    private class ReportTask implements Runnable {
+
+        @Override
+        public void run() {
+            long now = System.currentTimeMillis();
+            prune(addresses, now, WINDOW_MILLIS);
+            prune(accounts, now, LOCKOUT_MILLIS);
+            long total = completed.get() + rejected.get() + throttled.get()
+                    + abandoned.get();
+            if (total != lastReported || getQueueDepth() > 0) {
+                lastReported = total;
+                System.out.println("Authentication: queued "
+                        + getQueueDepth() + ", active " + getActiveCount()
+                        + ", completed " + completed.get() + ", failed "
+                        + failed.get() + ", rejected " + rejected.get()
+                        + ", throttled " + throttled.get()
+                        + ", abandoned " + abandoned.get());
+            }
+            TimerService.getInstance().schedule(this, REPORT_MILLIS);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package server;
+
+import server.messages.AvatarMessage;
+
+/*
+ * Avatar images keyed by the hash of their bytes. Players sharing an image
+ * share one copy, and only the hash is ever sent in the lobby. The images
+ * are kept in the UserStore next to the accounts that use them.
+ */
+public class AvatarStore {
+
+    private UserStore userStore;
+
+    public AvatarStore(UserStore userStore) {
+        this.userStore = userStore;
+    }
+
+    public String put(byte[] image) {
+        String hash = AvatarMessage.hash(image);
+        userStore.putAvatar(hash, image);
+        return hash;
+    }
+
+    public byte[] get(String hash) {
+        return userStore.getAvatar(hash);
+    }
+}
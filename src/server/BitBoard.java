@@ -0,0 +1,209 @@
+package server;
+
+import model.Board;
+import model.Ship;
+import model.Square;
+
+/*
+ * Server side state of one player's board. Square (x, y) is bit y * 10 + x of
+ * a 128 bit mask split over two longs. Every shot updates the remaining
+ * cells of the ship it hits and a fleet wide counter, so hit, sink and game
+ * over are answered in O(1) without allocating. The shots are logged in
+ * order, which lets replay() rebuild any earlier state.
+ */
+public class BitBoard {
+
+    private final static int SIZE = Board.BOARD_DIMENSION;
+
+    private long shipsLow;
+    private long shipsHigh;
+    private long shotsLow;
+    private long shotsHigh;
+    private long[] shipLow;
+    private long[] shipHigh;
+    private long[] remainingLow;
+    private long[] remainingHigh;
+    private Ship.Type[] types;
+    private boolean[] vertical;
+    // ship index + 1 for every square, 0 for water
+    private byte[] owner;
+    private int remainingCells;
+    private byte[] moves;
+    private int moveCount;
+
+    private BitBoard(int shipCount) {
+        this.shipLow = new long[shipCount];
+        this.shipHigh = new long[shipCount];
+        this.remainingLow = new long[shipCount];
+        this.remainingHigh = new long[shipCount];
+        this.types = new Ship.Type[shipCount];
+        this.vertical = new boolean[shipCount];
+        this.owner = new byte[SIZE * SIZE];
+        this.moves = new byte[SIZE * SIZE];
+    }
+
+    public static BitBoard fromBoard(Board board) {
+        BitBoard bitBoard = new BitBoard(board.getShips().size());
+        int i = 0;
+        for (Ship ship : board.getShips()) {
+            bitBoard.types[i] = ship.getType();
+            bitBoard.vertical[i] = ship.isVertical();
+            for (Square square : ship.getSquares()) {
+                int index = square.getY() * SIZE + square.getX();
+                if (index < 64) {
+                    bitBoard.shipLow[i] |= 1L << index;
+                } else {
+                    bitBoard.shipHigh[i] |= 1L << (index - 64);
+                }
+                bitBoard.owner[index] = (byte) (i + 1);
+            }
+            bitBoard.shipsLow |= bitBoard.shipLow[i];
+            bitBoard.shipsHigh |= bitBoard.shipHigh[i];
+            i++;
+        }
+        bitBoard.reset();
+        return bitBoard;
+    }
+
+    // a fleet as the journal stores it, each ship by its first square
+    public static BitBoard fromFleet(Ship.Type[] types, boolean[] vertical,
+            int[] first) {
+        BitBoard bitBoard = new BitBoard(types.length);
+        for (int i = 0; i < types.length; i++) {
+            bitBoard.types[i] = types[i];
+            bitBoard.vertical[i] = vertical[i];
+            for (int j = 0; j < types[i].getLength(); j++) {
+                int index = first[i] + (vertical[i] ? j * SIZE : j);
+                if (index < 64) {
+                    bitBoard.shipLow[i] |= 1L << index;
+                } else {
+                    bitBoard.shipHigh[i] |= 1L << (index - 64);
+                }
+                bitBoard.owner[index] = (byte) (i + 1);
+            }
+            bitBoard.shipsLow |= bitBoard.shipLow[i];
+            bitBoard.shipsHigh |= bitBoard.shipHigh[i];
+        }
+        bitBoard.reset();
+        return bitBoard;
+    }
+
+    private void reset() {
+        shotsLow = 0;
+        shotsHigh = 0;
+        System.arraycopy(shipLow, 0, remainingLow, 0, shipLow.length);
+        System.arraycopy(shipHigh, 0, remainingHigh, 0, shipHigh.length);
+        remainingCells = Long.bitCount(shipsLow) + Long.bitCount(shipsHigh);
+        moveCount = 0;
+    }
+
+    public boolean isShot(int x, int y) {
+        return contains(shotsLow, shotsHigh, y * SIZE + x);
+    }
+
+    // index of the ship that was hit, -1 for a miss or a square already shot
+    public int shoot(int x, int y) {
+        int index = y * SIZE + x;
+        if (contains(shotsLow, shotsHigh, index)) {
+            return -1;
+        }
+        moves[moveCount++] = (byte) index;
+        int ship = owner[index] - 1;
+        if (index < 64) {
+            shotsLow |= 1L << index;
+            if (ship >= 0) {
+                remainingLow[ship] &= ~(1L << index);
+            }
+        } else {
+            shotsHigh |= 1L << (index - 64);
+            if (ship >= 0) {
+                remainingHigh[ship] &= ~(1L << (index - 64));
+            }
+        }
+        if (ship >= 0) {
+            remainingCells--;
+        }
+        return ship;
+    }
+
+    // index of the ship covering the square, or -1
+    public int shipAt(int x, int y) {
+        return owner[y * SIZE + x] - 1;
+    }
+
+    public boolean isSunk(int ship) {
+        return remainingLow[ship] == 0 && remainingHigh[ship] == 0;
+    }
+
+    public boolean gameOver() {
+        return remainingCells == 0;
+    }
+
+    public int getRemainingCells() {
+        return remainingCells;
+    }
+
+    public int getShipCount() {
+        return types.length;
+    }
+
+    public Ship.Type getShipType(int ship) {
+        return types[ship];
+    }
+
+    public boolean isVertical(int ship) {
+        return vertical[ship];
+    }
+
+    // square index of the top or left end of the ship
+    public int getFirstSquare(int ship) {
+        return shipLow[ship] != 0 ? Long.numberOfTrailingZeros(shipLow[ship])
+                : 64 + Long.numberOfTrailingZeros(shipHigh[ship]);
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    // square index y * 10 + x of the n-th shot
+    public int getMove(int n) {
+        return moves[n];
+    }
+
+    // the same fleet with only the first count shots applied
+    public BitBoard replay(int count) {
+        BitBoard copy = new BitBoard(types.length);
+        copy.shipsLow = shipsLow;
+        copy.shipsHigh = shipsHigh;
+        System.arraycopy(shipLow, 0, copy.shipLow, 0, shipLow.length);
+        System.arraycopy(shipHigh, 0, copy.shipHigh, 0, shipHigh.length);
+        System.arraycopy(types, 0, copy.types, 0, types.length);
+        System.arraycopy(vertical, 0, copy.vertical, 0, vertical.length);
+        System.arraycopy(owner, 0, copy.owner, 0, owner.length);
+        copy.reset();
+        for (int i = 0; i < Math.min(count, moveCount); i++) {
+            copy.shoot(moves[i] % SIZE, moves[i] / SIZE);
+        }
+        return copy;
+    }
+
+    // only needed for messages to clients, so allocating here is fine
+    public Ship toShip(int ship) {
+        Ship result = new Ship(types[ship]);
+        result.setVertical(vertical[ship]);
+        for (int index = 0; index < SIZE * SIZE; index++) {
+            if (contains(shipLow[ship], shipHigh[ship], index)) {
+                result.setSquare(new Square(index % SIZE, index / SIZE, true));
+            }
+        }
+        if (isSunk(ship)) {
+            result.sink();
+        }
+        return result;
+    }
+
+    private static boolean contains(long low, long high, int index) {
+        return index < 64 ? (low & (1L << index)) != 0
+                : (high & (1L << (index - 64))) != 0;
+    }
+}
@@ -0,0 +1,98 @@
+package server;
+
+import model.Board;
+import model.Ship;
+import model.Square;
+
+import java.util.ArrayList;
+
+/*
+ * Checks a submitted board straight from its ship coordinates: the fleet
+ * composition, bounds, overlap and that every ship is one straight unbroken
+ * line. Nothing is allocated, so a board submission costs a few hundred
+ * operations.
+ */
+public class FleetValidator {
+
+    private final static int SIZE = Board.BOARD_DIMENSION;
+
+    // ships of each Ship.Type, one byte per type ordinal
+    private final static long FLEET = count(Ship.Type.AIRCRAFT_CARRIER)
+            + count(Ship.Type.BATTLESHIP)
+            + 2 * count(Ship.Type.DESTROYER)
+            + 2 * count(Ship.Type.PATROL_BOAT);
+    private final static int FLEET_SIZE = 6;
+
+    public static boolean isValid(Board board) {
+        ArrayList<Ship> ships = board.getShips();
+        if (ships == null || ships.size() != FLEET_SIZE) {
+            return false;
+        }
+        long fleet = 0;
+        long occupiedLow = 0;
+        long occupiedHigh = 0;
+        for (int i = 0; i < ships.size(); i++) {
+            Ship ship = ships.get(i);
+            if (ship == null || ship.getType() == null) {
+                return false;
+            }
+            fleet += count(ship.getType());
+            ArrayList<Square> squares = ship.getSquares();
+            int length = ship.getLength();
+            if (squares == null || squares.size() != length
+                    || squares.get(0) == null) {
+                return false;
+            }
+            int line = ship.isVertical() ? squares.get(0).getX()
+                    : squares.get(0).getY();
+            int min = SIZE;
+            int max = -1;
+            long shipLow = 0;
+            long shipHigh = 0;
+            for (int j = 0; j < length; j++) {
+                Square square = squares.get(j);
+                if (square == null) {
+                    return false;
+                }
+                int x = square.getX();
+                int y = square.getY();
+                if (x < 0 || x >= SIZE || y < 0 || y >= SIZE) {
+                    return false;
+                }
+                int across = ship.isVertical() ? x : y;
+                int along = ship.isVertical() ? y : x;
+                if (across != line) {
+                    return false;
+                }
+                min = Math.min(min, along);
+                max = Math.max(max, along);
+                int index = y * SIZE + x;
+                if (index < 64) {
+                    if ((shipLow & (1L << index)) != 0) {
+                        return false;
+                    }
+                    shipLow |= 1L << index;
+                } else {
+                    if ((shipHigh & (1L << (index - 64))) != 0) {
+                        return false;
+                    }
+                    shipHigh |= 1L << (index - 64);
+                }
+            }
+            // distinct squares on one line spanning exactly length cells
+            if (max - min != length - 1) {
+                return false;
+            }
+            if ((shipLow & occupiedLow) != 0 || (shipHigh & occupiedHigh) != 0) {
+                return false;
+            }
+            occupiedLow |= shipLow;
+            occupiedHigh |= shipHigh;
+        }
+        return fleet == FLEET;
+    }
+
+    private static long count(Ship.Type type) {
+        return 1L << (type.ordinal() * 8);
+    }
+}
@@ -2,43 +2,85 @@ package server;
 
 import model.Board;
 import model.Ship;
-import model.Square;
-import server.messages.BoardMessage;
+import server.messages.ChatMessage;
+import server.messages.EncodedMessage;
 import server.messages.MoveMessage;
 import server.messages.MoveResponseMessage;
 import server.messages.NotificationMessage;
+import server.messages.SpectatorSyncMessage;
 
 import javax.management.Notification;
 import java.util.ArrayList;
 import java.util.Random;
-import java.util.Timer;
-import java.util.TimerTask;
 
+/*
+ * A game is an actor: players, timers and watchers send it tasks through
+ * its mailbox, which runs them one at a time in arrival order. The game's
+ * state is only touched by those tasks, so none of it is locked and a slow
+ * connection never holds up anyone else. The monitor is only taken around
+ * the moves and boards the spectator feeds read when they build a catch up.
+ * The boards belong to the game rather than the players, since a player who
+ * leaves may be in a new game before this one's last task has run.
+ */
 public class Game {
 
     private Player player1;
-    private ArrayList<Player>  player1Watchers;
+    // watchers see the game from the side of the player they watch
+    private SpectatorFeed player1Watchers;
     private Player player2;
-    private ArrayList<Player>  player2Watchers;
+    private SpectatorFeed player2Watchers;
+    private BitBoard board1;
+    private BitBoard board2;
     private Player turn;
+    // counts the turns, so a timer that fires for an old turn is ignored
+    private int turnNumber;
     private Boolean isPublic = false;
+    private GameJournal journal;
+    private long id;
+    private volatile boolean ended;
+    private Mailbox mailbox;
 
-    private Timer placementTimer;
-    private Timer turnTimer;
+    private TimerService.Timeout placementTimer;
+    private TimerService.Timeout turnTimer;
 
     public final static int TURN_TIMEOUT = 40000;
     public final static int PLACEMENT_TIMEOUT = 100000;
 
+    private final static int SIZE = Board.BOARD_DIMENSION;
+
     private boolean gameStarted;
 
-    public Game(Player player1, Player player2, boolean isPublic) {
+    // every shot in order, square index plus SIZE * SIZE for player2's board
+    private short[] moveLog;
+    // number of moves played
+    private int version;
+
+    public Game(Player player1, Player player2, final boolean isPublic,
+            GameJournal journal) {
         this.isPublic = isPublic;
-        this.player1Watchers = new ArrayList<>();
-        this.player2Watchers = new ArrayList<>();
+        this.journal = journal;
+        this.id = journal.nextGameId();
         this.player1 = player1;
         this.player2 = player2;
+        this.moveLog = new short[2 * SIZE * SIZE];
+        this.mailbox = new Mailbox();
+        this.player1Watchers = new SpectatorFeed(this,
+                new WatcherSnapshot(player1));
+        this.player2Watchers = new SpectatorFeed(this,
+                new WatcherSnapshot(player2));
         player1.setGame(this);
         player2.setGame(this);
+        mailbox.send(new Runnable() {
+            @Override
+            public void run() {
+                start();
+            }
+        });
+    }
+
+    private void start() {
+        journal.gameStarted(id, player1.getPlayerName(),
+                player2.getPlayerName(), isPublic);
         player1.writeNotification(NotificationMessage.OPPONENTS_NAME,
                 player2.getPlayerName());
         player2.writeNotification(NotificationMessage.OPPONENTS_NAME,
@@ -48,8 +90,81 @@ public class Game {
         player1.writeObject(placeShipsMessage);
         player2.writeObject(placeShipsMessage);
 
-        placementTimer = new Timer();
-        placementTimer.schedule(new PlacementTimerTask(), PLACEMENT_TIMEOUT);
+        placementTimer = TimerService.getInstance().schedule(
+                new PlacementTimerTask(), PLACEMENT_TIMEOUT);
+    }
+
+    /*
+     * Continues a game the journal shows unfinished, with the shots played
+     * before the restart. A player whose fleet was placed gets it back, the
+     * other places it again, and the turn is the one the last shot left.
+     */
+    public Game(Player player1, Player player2,
+            final RecoveredGame recovered, GameJournal journal) {
+        this.isPublic = recovered.isPublic();
+        this.journal = journal;
+        this.id = recovered.getId();
+        this.player1 = player1;
+        this.player2 = player2;
+        this.moveLog = new short[2 * SIZE * SIZE];
+        this.mailbox = new Mailbox();
+        this.player1Watchers = new SpectatorFeed(this,
+                new WatcherSnapshot(player1));
+        this.player2Watchers = new SpectatorFeed(this,
+                new WatcherSnapshot(player2));
+        player1.setGame(this);
+        player2.setGame(this);
+        mailbox.send(new Runnable() {
+            @Override
+            public void run() {
+                recover(recovered);
+            }
+        });
+    }
+
+    private void recover(RecoveredGame recovered) {
+        synchronized (this) {
+            short[] moves = recovered.getMoves();
+            System.arraycopy(moves, 0, moveLog, 0, moves.length);
+            version = moves.length;
+            board1 = recovered.getBoard(1);
+            board2 = recovered.getBoard(2);
+        }
+        player1.writeNotification(NotificationMessage.OPPONENTS_NAME,
+                player2.getPlayerName());
+        player2.writeNotification(NotificationMessage.OPPONENTS_NAME,
+                player1.getPlayerName());
+        for (Player player : new Player[] {player1, player2}) {
+            if (getBoard(player) == null) {
+                player.writeNotification(NotificationMessage.PLACE_SHIPS);
+            } else if (getBoard(getOpponent(player)) == null) {
+                // the fleet alone, no shots before both are placed
+                player.writeObject(new SpectatorSyncMessage(0, 0,
+                        fleet(getBoard(player)),
+                        new ArrayList<MoveResponseMessage>()));
+                player.writeNotification(NotificationMessage.BOARD_ACCEPTED);
+            } else {
+                player.writeObject(sync(player, 0));
+                player.writeNotification(NotificationMessage.BOARD_ACCEPTED);
+            }
+        }
+        if (board1 == null || board2 == null) {
+            placementTimer = TimerService.getInstance().schedule(
+                    new PlacementTimerTask(), PLACEMENT_TIMEOUT);
+        } else {
+            gameStarted = true;
+            if (version == 0) {
+                setTurn(new Random().nextInt(2) == 0 ? player1 : player2);
+            } else {
+                // a hit gives the shooter another go
+                boolean onPlayer2 = moveLog[version - 1] >= SIZE * SIZE;
+                Player shooter = onPlayer2 ? player1 : player2;
+                int square = moveLog[version - 1] % (SIZE * SIZE);
+                boolean hit = getBoard(getOpponent(shooter)).shipAt(
+                        square % SIZE, square / SIZE) >= 0;
+                setTurn(hit ? shooter : getOpponent(shooter));
+            }
+        }
     }
 
     public Player getOpponent(Player self) {
@@ -58,6 +173,7 @@ public class Game {
         }
         return player1;
     }
+
     public void cancelTimers(){
         if (turnTimer != null) {
             turnTimer.cancel();
@@ -67,24 +183,115 @@ public class Game {
         }
     }
 
-    public void killGame() {
-        player1.setGame(null);
-        player2.setGame(null);
+    /*
+     * The player leaving loses a game that was still being played. They
+     * are out of it at once, so they can start another straight away.
+     */
+    public void abandon(final Player player) {
+        player.leftGame(this);
+        mailbox.send(new Runnable() {
+            @Override
+            public void run() {
+                getOpponent(player).writeNotification(
+                        NotificationMessage.OPPONENT_DISCONNECTED);
+                end(GameJournal.ABANDONED, getOpponent(player));
+                killGame();
+            }
+        });
     }
 
-    public synchronized void setTurn(Player player) {
+    // the player's connection dropped, they may still resume
+    public void dropped(final Player player) {
+        mailbox.send(new Runnable() {
+            @Override
+            public void run() {
+                if (!ended) {
+                    getOpponent(player).writeNotification(
+                            NotificationMessage.OPPONENT_RECONNECTING);
+                }
+            }
+        });
+    }
+
+    // journals how the game ended, only the first call counts
+    private void end(byte reason, Player winner) {
+        if (!ended) {
+            ended = true;
+            cancelTimers();
+            journal.gameEnded(id, reason, winner == null ? 0 : side(winner));
+        }
+    }
+
+    public boolean isEnded() {
+        return ended;
+    }
+
+    // a player back on a new connection gets the moves after version
+    public void resume(final Player player, final int version) {
+        mailbox.send(new Runnable() {
+            @Override
+            public void run() {
+                player.writeObject(sync(player, version));
+                if (turn != null) {
+                    player.writeNotification(turn == player
+                            ? NotificationMessage.YOUR_TURN
+                            : NotificationMessage.OPPONENTS_TURN);
+                }
+                getOpponent(player).writeNotification(
+                        NotificationMessage.OPPONENT_RECONNECTED);
+            }
+        });
+    }
+
+    private int side(Player player) {
+        return player == player1 ? 1 : 2;
+    }
+
+    private BitBoard getBoard(Player player) {
+        return player == player1 ? board1 : board2;
+    }
+
+    private void killGame() {
+        player1.leftGame(this);
+        player2.leftGame(this);
+    }
+
+    private void setTurn(Player player) {
         turn = player;
+        turnNumber++;
         if (turnTimer != null) {
             turnTimer.cancel();
         }
-        turnTimer = new Timer();
-        turnTimer.schedule(new TurnTimerTask(), TURN_TIMEOUT);
+        turnTimer = TimerService.getInstance().schedule(
+                new TurnTimerTask(turnNumber), TURN_TIMEOUT);
         turn.writeNotification(NotificationMessage.YOUR_TURN);
         getOpponent(turn).writeNotification(NotificationMessage.OPPONENTS_TURN);
     }
 
-    public void checkBoards() {
-        if (player1.getBoard() != null && player2.getBoard() != null) {
+    // the board was checked by the player's thread already
+    public void placeBoard(final Player player, final BitBoard board) {
+        mailbox.send(new Runnable() {
+            @Override
+            public void run() {
+                if (ended || gameStarted || getBoard(player) != null) {
+                    return;
+                }
+                synchronized (Game.this) {
+                    if (player == player1) {
+                        board1 = board;
+                    } else {
+                        board2 = board;
+                    }
+                }
+                player.writeNotification(NotificationMessage.BOARD_ACCEPTED);
+                journal.boardPlaced(id, side(player), board);
+                checkBoards();
+            }
+        });
+    }
+
+    private void checkBoards() {
+        if (board1 != null && board2 != null) {
             placementTimer.cancel();
             startGame();
         }
@@ -92,11 +299,8 @@ public class Game {
 
     private void startGame() {
         gameStarted = true;
-        for (Player p : player1Watchers)
-            giveWatcherBoards(player1 ,p);
-
-        for (Player p : player2Watchers)
-            giveWatcherBoards(player2 ,p);
+        player1Watchers.publish(sync(player1, 0));
+        player2Watchers.publish(sync(player2, 0));
 
         if (new Random().nextInt(2) == 0) {
             setTurn(player1);
@@ -105,7 +309,18 @@ public class Game {
         }
     }
 
-    public synchronized void applyMove(MoveMessage move, Player player) {
+    public void applyMove(final MoveMessage move, final Player player) {
+        mailbox.send(new Runnable() {
+            @Override
+            public void run() {
+                if (!ended) {
+                    move(move, player);
+                }
+            }
+        });
+    }
+
+    private void move(MoveMessage move, Player player) {
         if (player != turn) {
             player.writeNotification(NotificationMessage.NOT_YOUR_TURN);
             return;
@@ -117,39 +332,38 @@ public class Game {
             player.writeNotification(NotificationMessage.INVALID_MOVE);
         } else {
             Player opponent = getOpponent(player);
-            Square square = opponent.getBoard().getSquare(x, y);
-            if (square.isGuessed()) {
+            BitBoard board = getBoard(opponent);
+            if (board.isShot(x, y)) {
                 player.writeNotification(NotificationMessage.REPEATED_MOVE);
                 return;
             }
-            boolean hit = square.guess();
-            Ship ship = square.getShip();
+            int ship;
+            synchronized (this) {
+                ship = board.shoot(x, y);
+                moveLog[version++] = (short) (y * SIZE + x
+                        + (opponent == player2 ? SIZE * SIZE : 0));
+            }
+            boolean hit = ship >= 0;
+            journal.move(id, side(player), y * SIZE + x, ship,
+                    ship >= 0 && board.isSunk(ship));
             MoveResponseMessage response;
-            if (ship != null && ship.isSunk()) {
-                response = new MoveResponseMessage(x, y, ship, true, false);
+            if (ship >= 0 && board.isSunk(ship)) {
+                response = new MoveResponseMessage(x, y, board.toShip(ship),
+                        true, false);
             } else {
                 response = new MoveResponseMessage(x, y, null, hit, false);
             }
             player.writeObject(response);
+            getWatchers(player).publish(response);
 
-
-            if(player.hashCode() == player1.hashCode())
-                for (Player p : player1Watchers)
-                    p.writeObject(response);
-            else
-                for (Player p : player2Watchers)
-                    p.writeObject(response);
-            response.setOwnBoard(true);
+            // watchers encode later, so the opponent's copy is a new message
+            response = new MoveResponseMessage(x, y, response.shipSank(),
+                    hit, true);
             opponent.writeObject(response);
+            getWatchers(opponent).publish(response);
 
-            if(player.hashCode() == player2.hashCode())
-                for (Player p : player1Watchers)
-                    p.writeObject(response);
-            else
-                for (Player p : player2Watchers)
-                    p.writeObject(response);
-
-            if (opponent.getBoard().gameOver()) {
+            if (board.gameOver()) {
+                end(GameJournal.FLEET_SUNK, turn);
                 turn.writeNotification(NotificationMessage.GAME_WIN);
                 opponent.writeNotification(NotificationMessage.GAME_LOSE);
                 turn = null;
@@ -161,118 +375,214 @@ public class Game {
         }
     }
 
-    private class PlacementTimerTask extends TimerTask {
+    // runs in the mailbox, so it cannot race a board arriving
+    private class PlacementTimerTask implements Runnable {
 
         @Override
         public void run() {
-            if (player1.getBoard() == null & player2.getBoard() == null) {
-                NotificationMessage draw = new NotificationMessage(
-                        NotificationMessage.TIMEOUT_DRAW);
-                player1.writeObject(draw);
-                player2.writeObject(draw);
-                killGame();
-            } else if (player1.getBoard() == null) {
-                // Player1 failed to place ships in time
-                player1.writeNotification(NotificationMessage.TIMEOUT_LOSE);
-                player2.writeNotification(NotificationMessage.TIMEOUT_WIN);
-                killGame();
-            } else if (player2.getBoard() == null) {
-                // Player2 failed to place ships in time
-                player1.writeNotification(NotificationMessage.TIMEOUT_WIN);
-                player2.writeNotification(NotificationMessage.TIMEOUT_LOSE);
-                killGame();
-            }
+            mailbox.send(new Runnable() {
+                @Override
+                public void run() {
+                    if (!ended && !gameStarted) {
+                        placementTimeout();
+                    }
+                }
+            });
         }
     }
 
-    private class TurnTimerTask extends TimerTask {
+    private void placementTimeout() {
+        end(GameJournal.PLACEMENT_TIMEOUT, board1 != null
+                ? player1 : board2 != null ? player2 : null);
+        if (board1 == null & board2 == null) {
+            NotificationMessage draw = new NotificationMessage(
+                    NotificationMessage.TIMEOUT_DRAW);
+            player1.writeObject(draw);
+            player2.writeObject(draw);
+            killGame();
+        } else if (board1 == null) {
+            // Player1 failed to place ships in time
+            player1.writeNotification(NotificationMessage.TIMEOUT_LOSE);
+            player2.writeNotification(NotificationMessage.TIMEOUT_WIN);
+            killGame();
+        } else if (board2 == null) {
+            // Player2 failed to place ships in time
+            player1.writeNotification(NotificationMessage.TIMEOUT_WIN);
+            player2.writeNotification(NotificationMessage.TIMEOUT_LOSE);
+            killGame();
+        }
+    }
+
+    private class TurnTimerTask implements Runnable {
+
+        private int number;
+
+        TurnTimerTask(int number) {
+            this.number = number;
+        }
 
         @Override
         public void run() {
-            if (turn != null) {
-                turn.writeNotification(NotificationMessage.TIMEOUT_LOSE);
-                getOpponent(turn).writeNotification(
-                        NotificationMessage.TIMEOUT_WIN);
-                killGame();
-            }
+            mailbox.send(new Runnable() {
+                @Override
+                public void run() {
+                    // a move may have started a new turn since it fired
+                    if (turn != null && number == turnNumber && !ended) {
+                        end(GameJournal.TURN_TIMEOUT, getOpponent(turn));
+                        turn.writeNotification(
+                                NotificationMessage.TIMEOUT_LOSE);
+                        getOpponent(turn).writeNotification(
+                                NotificationMessage.TIMEOUT_WIN);
+                        killGame();
+                    }
+                }
+            });
         }
 
     }
 
-    public synchronized void addPlayerWatcher(Player player, Player watcher) {
-        if(isPublic) {
-            if (player.hashCode() == player1.hashCode()) {
-                if (!player1Watchers.contains(watcher)) {
-                    player1Watchers.add(watcher);
-                    watcher.writeNotification(NotificationMessage.FRIEND_OPPONENTS , player1.getOwnKey(),player2.getPlayerName());
-                }
-            } else if (player.hashCode() == player2.hashCode()) {
-                if (!player2Watchers.contains(watcher)) {
-                    player2Watchers.add(watcher);
-                    watcher.writeNotification(NotificationMessage.FRIEND_OPPONENTS , player2.getOwnKey(),player1.getPlayerName());
-                }
+    public void relayChat(final Player player, final ChatMessage message) {
+        mailbox.send(new Runnable() {
+            @Override
+            public void run() {
+                journal.chat(id, side(player), message.getMessage());
+                EncodedMessage chat = new EncodedMessage(message);
+                getOpponent(player).writeObject(chat);
+                player1Watchers.publish(chat);
+                player2Watchers.publish(chat);
             }
-        }
+        });
     }
-    public synchronized void giveWatcherBoards(Player player, Player watcher) {
-        if(isPublic && player1.getBoard() != null && player2.getBoard() != null) {
-            if (player.hashCode() == player1.hashCode()) {
-                if (player1Watchers.contains(watcher)) {
-                    BoardMessage message =  new BoardMessage(
-                            player1.getBoard(), player2.getBoard());
-                    watcher.writeObject(message);
-                }
-            } else if (player.hashCode() == player2.hashCode()) {
-                if (player2Watchers.contains(watcher)) {
-                    BoardMessage message =  new BoardMessage(
-                            player2.getBoard(), player1.getBoard());
-                    watcher.writeObject(message);
+
+    public void addPlayerWatcher(final Player player, final Player watcher) {
+        mailbox.send(new Runnable() {
+            @Override
+            public void run() {
+                SpectatorFeed watchers = getWatchers(player);
+                if (isPublic && watchers != null && watchers.add(watcher)) {
+                    watcher.writeNotification(
+                            NotificationMessage.FRIEND_OPPONENTS,
+                            player.getOwnKey(),
+                            getOpponent(player).getPlayerName());
                 }
             }
-        }else{
-            watcher.writeObject(new BoardMessage(
-                    null, null));
-        }
+        });
     }
 
+    // the watcher has the game up to version and gets the rest
+    public void giveWatcherBoards(final Player player, final Player watcher,
+            final int version) {
+        mailbox.send(new Runnable() {
+            @Override
+            public void run() {
+                SpectatorFeed watchers = getWatchers(player);
+                if (isPublic && watchers != null
+                        && watchers.contains(watcher)) {
+                    watchers.resync(watcher, version);
+                } else {
+                    watcher.writeObject(new SpectatorSyncMessage(0, 0, null,
+                            new ArrayList<MoveResponseMessage>()));
+                }
+            }
+        });
+    }
 
-    public synchronized void removePlayerWatcher(Player player, Player watcher) {
-        if(isPublic) {
-            if (player.hashCode() == player1.hashCode()) {
-                player1Watchers.remove(watcher);
-            } else if (player.hashCode() == player2.hashCode()) {
-                player2Watchers.remove(watcher);
+    public void removePlayerWatcher(final Player player,
+            final Player watcher) {
+        mailbox.send(new Runnable() {
+            @Override
+            public void run() {
+                SpectatorFeed watchers = getWatchers(player);
+                if (watchers != null) {
+                    watchers.remove(watcher);
+                }
             }
-        }
+        });
     }
 
-    public synchronized ArrayList<Player> getPlayerWatchers(Player player){
-        if (player.hashCode() == player1.hashCode()){
+    public SpectatorFeed getWatchers(Player player){
+        if (player == player1){
             return player1Watchers;
-        }else if(player.hashCode() == player2.hashCode()) {
+        }else if(player == player2) {
             return player2Watchers;
         }
         return null;
     }
 
-    public synchronized boolean playerWatcherNameExists(Player player, String watcherName) {
-
-        if(isPublic) {
-            if (player.hashCode() == player1.hashCode()) {
-                for (Player p : player1Watchers) {
-                    if (watcherName.equals(p.getPlayerName())) {
-                        return true;
-                    }
-                }
-            } else if (player.hashCode() == player2.hashCode()) {
-                for (Player p : player2Watchers) {
-                    if (watcherName.equals(p.getPlayerName())) {
-                        return true;
-                    }
+    public boolean playerWatcherNameExists(Player player, String watcherName) {
+        SpectatorFeed watchers = getWatchers(player);
+        if (isPublic && watchers != null) {
+            for (Player p : watchers.getWatchers()) {
+                if (watcherName.equals(p.getPlayerName())) {
+                    return true;
                 }
             }
         }
         return false;
+    }
+
+    /*
+     * The moves after fromVersion as the watchers of player saw them, and
+     * from version 0 the fleet of player as well. Whether a move sank a
+     * ship is found by replaying the board's shots up to that move.
+     */
+    private SpectatorSyncMessage sync(Player player, int fromVersion) {
+        ArrayList<MoveResponseMessage> moves = new ArrayList<>();
+        if (board1 == null || board2 == null) {
+            return new SpectatorSyncMessage(0, 0, null, moves);
+        }
+        if (fromVersion < 0 || fromVersion > version) {
+            fromVersion = 0;
+        }
+        int shots1 = 0;
+        for (int i = 0; i < fromVersion; i++) {
+            if (moveLog[i] < SIZE * SIZE) {
+                shots1++;
+            }
+        }
+        BitBoard replay1 = board1.replay(shots1);
+        BitBoard replay2 = board2.replay(fromVersion - shots1);
+        ArrayList<Ship> fleet = null;
+        if (fromVersion == 0) {
+            fleet = fleet(player == player1 ? replay1 : replay2);
+        }
+        for (int i = fromVersion; i < version; i++) {
+            int square = moveLog[i] % (SIZE * SIZE);
+            BitBoard board = moveLog[i] < SIZE * SIZE ? replay1 : replay2;
+            int ship = board.shoot(square % SIZE, square / SIZE);
+            Ship sunk = ship >= 0 && board.isSunk(ship)
+                    ? board.toShip(ship) : null;
+            boolean ownBoard = (board == replay1) == (player == player1);
+            moves.add(new MoveResponseMessage(square % SIZE, square / SIZE,
+                    sunk, ship >= 0, ownBoard));
+        }
+        return new SpectatorSyncMessage(fromVersion, version, fleet, moves);
+    }
+
+    private static ArrayList<Ship> fleet(BitBoard board) {
+        ArrayList<Ship> fleet = new ArrayList<>();
+        for (int i = 0; i < board.getShipCount(); i++) {
+            fleet.add(board.toShip(i));
+        }
+        return fleet;
+    }
+
+    private class WatcherSnapshot implements SpectatorFeed.Snapshot {
+
+        private Player player;
 
+        WatcherSnapshot(Player player) {
+            this.player = player;
+        }
+
+        @Override
+        public int getVersion() {
+            return version;
+        }
+
+        @Override
+        public Object build(int fromVersion) {
+            return sync(player, fromVersion);
+        }
     }
 }
@@ -0,0 +1,412 @@
+package server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/*
+ * Append-only record of every game event. The journal is a directory of
+ * numbered segment files, each mapped into memory; an append is a copy into
+ * the mapping, so it costs the game thread microseconds and never waits for
+ * the disk. A commit thread forces the written pages out every few
+ * milliseconds, so one flush covers everything appended since the last.
+ * A crash of the process loses nothing, a crash of the machine at most the
+ * last commit interval.
+ *
+ * Every record is [int length][int crc][body] and the body starts with the
+ * type, the game id and the time. A zero length ends a segment. The server
+ * reads the journal once on startup, in recover, and then carries on at the
+ * end of the last segment; earlier ones are only read.
+ * A segment older than the start of every unfinished game only holds games
+ * that have ended, so it is deleted when a new segment is started.
+ */
+public class GameJournal {
+
+    public final static byte GAME_STARTED = 1;
+    public final static byte BOARD_PLACED = 2;
+    public final static byte MOVE = 3;
+    public final static byte CHAT = 4;
+    public final static byte GAME_ENDED = 5;
+    // first in every segment, so the last game id outlives deleted segments
+    public final static byte SEGMENT_STARTED = 6;
+
+    // reasons a game ended, stored with GAME_ENDED
+    public final static byte FLEET_SUNK = 1;
+    public final static byte TURN_TIMEOUT = 2;
+    public final static byte PLACEMENT_TIMEOUT = 3;
+    public final static byte ABANDONED = 4;
+
+    private final static int SEGMENT_SIZE = 16 * 1024 * 1024;
+    private final static int HEADER = 8;
+    private final static long COMMIT_MILLIS = 5;
+    private final static String SUFFIX = ".journal";
+
+    private File directory;
+    private int segmentNumber;
+    private RandomAccessFile segmentFile;
+    private MappedByteBuffer segment;
+    private volatile boolean dirty;
+    private AtomicLong gameIds;
+    // the segment each unfinished game started in
+    private HashMap<Long, Integer> openGames;
+    private ThreadLocal<Scratch> scratch;
+
+    public interface Handler {
+        void record(byte type, long gameId, long time, DataInputStream body)
+                throws IOException;
+    }
+
+    public GameJournal(File directory) throws IOException {
+        this.directory = directory;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        this.openGames = new HashMap<>();
+        this.gameIds = new AtomicLong();
+        this.scratch = new ThreadLocal<Scratch>() {
+            @Override
+            protected Scratch initialValue() {
+                return new Scratch();
+            }
+        };
+        Thread commit = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                commitLoop();
+            }
+        }, "journal-commit");
+        commit.setDaemon(true);
+        commit.start();
+    }
+
+    /*
+     * The one pass over the journal on startup. The handler sees every
+     * record, while the journal finds the last game id and the unfinished
+     * games, then it is opened for appending. Nothing can be appended
+     * before this has run.
+     */
+    public synchronized void recover(final Handler handler)
+            throws IOException {
+        if (segment != null) {
+            throw new IllegalStateException("Journal already recovered");
+        }
+        int tail = read(new Handler() {
+            @Override
+            public void record(byte type, long gameId, long time,
+                    DataInputStream body) throws IOException {
+                if (gameId > gameIds.get()) {
+                    gameIds.set(gameId);
+                }
+                if (type == GAME_STARTED) {
+                    openGames.put(gameId, segmentNumber);
+                } else if (type == GAME_ENDED) {
+                    openGames.remove(gameId);
+                }
+                handler.record(type, gameId, time, body);
+            }
+        });
+        if (segmentNumber > 0 && tail + HEADER + 4 < SEGMENT_SIZE) {
+            open(tail);
+            deleteFinishedSegments();
+        } else {
+            roll();
+        }
+    }
+
+    public long nextGameId() {
+        return gameIds.incrementAndGet();
+    }
+
+    public void gameStarted(long gameId, String player1, String player2,
+            boolean isPublic) {
+        try {
+            DataOutputStream out = begin(GAME_STARTED, gameId);
+            out.writeUTF(player1);
+            out.writeUTF(player2);
+            out.writeBoolean(isPublic);
+            append();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // player is 1 or 2, each ship is its type, orientation and first square
+    public void boardPlaced(long gameId, int player, BitBoard board) {
+        try {
+            DataOutputStream out = begin(BOARD_PLACED, gameId);
+            out.writeByte(player);
+            out.writeByte(board.getShipCount());
+            for (int i = 0; i < board.getShipCount(); i++) {
+                out.writeByte(board.getShipType(i).ordinal());
+                out.writeBoolean(board.isVertical(i));
+                out.writeByte(board.getFirstSquare(i));
+            }
+            append();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // ship is the index of the ship hit or -1
+    public void move(long gameId, int player, int square, int ship,
+            boolean sunk) {
+        try {
+            DataOutputStream out = begin(MOVE, gameId);
+            out.writeByte(player);
+            out.writeByte(square);
+            out.writeByte(ship);
+            out.writeBoolean(sunk);
+            append();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void chat(long gameId, int player, String message) {
+        try {
+            DataOutputStream out = begin(CHAT, gameId);
+            out.writeByte(player);
+            out.writeUTF(message == null ? "" : message);
+            append();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // winner is 1 or 2, or 0 for a draw
+    public void gameEnded(long gameId, byte reason, int winner) {
+        try {
+            DataOutputStream out = begin(GAME_ENDED, gameId);
+            out.writeByte(reason);
+            out.writeByte(winner);
+            append();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private DataOutputStream begin(byte type, long gameId)
+            throws IOException {
+        Scratch s = scratch.get();
+        s.reset();
+        s.type = type;
+        s.gameId = gameId;
+        s.out.writeByte(type);
+        s.out.writeLong(gameId);
+        s.out.writeLong(System.currentTimeMillis());
+        return s.out;
+    }
+
+    private void append() throws IOException {
+        Scratch s = scratch.get();
+        byte[] body = s.array();
+        int length = s.size();
+        s.crc.reset();
+        s.crc.update(body, 0, length);
+        int crc = (int) s.crc.getValue();
+        synchronized (this) {
+            if (segment == null) {
+                throw new IOException("Journal not recovered yet");
+            }
+            if (segment.remaining() < HEADER + length + 4) {
+                roll();
+            }
+            write(body, length, crc);
+            if (s.type == GAME_STARTED) {
+                openGames.put(s.gameId, segmentNumber);
+            } else if (s.type == GAME_ENDED) {
+                openGames.remove(s.gameId);
+            }
+        }
+    }
+
+    private void write(byte[] body, int length, int crc) {
+        int position = segment.position();
+        segment.position(position + 4);
+        segment.putInt(crc);
+        segment.put(body, 0, length);
+        // readers stop at the zero after the last record
+        segment.putInt(segment.position(), 0);
+        segment.putInt(position, length);
+        dirty = true;
+    }
+
+    private synchronized void roll() throws IOException {
+        if (segment != null) {
+            segment.force();
+            segmentFile.close();
+        }
+        segmentNumber++;
+        open(0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(SEGMENT_STARTED);
+        out.writeLong(gameIds.get());
+        out.writeLong(System.currentTimeMillis());
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        write(bytes.toByteArray(), bytes.size(), (int) crc.getValue());
+        deleteFinishedSegments();
+    }
+
+    // appends to the current segment from position on
+    private void open(int position) throws IOException {
+        segmentFile = new RandomAccessFile(segmentFile(directory,
+                segmentNumber), "rw");
+        segment = segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE,
+                0, SEGMENT_SIZE);
+        // a record torn by a crash is cut off
+        segment.putInt(position, 0);
+        segment.position(position);
+    }
+
+    private void deleteFinishedSegments() {
+        int oldest = segmentNumber;
+        for (int number : openGames.values()) {
+            oldest = Math.min(oldest, number);
+        }
+        for (int number : segmentNumbers(directory)) {
+            if (number < oldest) {
+                File file = segmentFile(directory, number);
+                if (!file.delete()) {
+                    System.out.println("Cannot delete " + file);
+                }
+            }
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            try {
+                Thread.sleep(COMMIT_MILLIS);
+                if (dirty) {
+                    MappedByteBuffer current;
+                    synchronized (this) {
+                        dirty = false;
+                        current = segment;
+                    }
+                    current.force();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // reads every complete record of every segment in order, for tools
+    public void replay(Handler handler) throws IOException {
+        for (int number : segmentNumbers(directory)) {
+            readSegment(segmentFile(directory, number), handler);
+        }
+    }
+
+    /*
+     * Reads the segments on startup, with segmentNumber set to the one being
+     * read, and returns where the records of the last one end.
+     */
+    private int read(Handler handler) throws IOException {
+        int tail = 0;
+        for (int number : segmentNumbers(directory)) {
+            segmentNumber = number;
+            tail = readSegment(segmentFile(directory, number), handler);
+        }
+        return tail;
+    }
+
+    private static int readSegment(File file, Handler handler)
+            throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            FileChannel channel = in.getChannel();
+            return readSegment(file, channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, channel.size()),
+                    handler);
+        }
+    }
+
+    // returns the end of the last complete record
+    private static int readSegment(File file, ByteBuffer buffer,
+            Handler handler) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] body = new byte[256];
+        int end = 0;
+        while (buffer.remaining() >= HEADER) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                return end;
+            }
+            if (body.length < length) {
+                body = new byte[length];
+            }
+            buffer.get(body, 0, length);
+            crc.reset();
+            crc.update(body, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                System.out.println(file + ": damaged record at " + end);
+                return end;
+            }
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(body, 0, length));
+            handler.record(in.readByte(), in.readLong(), in.readLong(), in);
+            end = buffer.position();
+        }
+        return end;
+    }
+
+    private static File segmentFile(File directory, int number) {
+        return new File(directory, String.format("%08d", number) + SUFFIX);
+    }
+
+    private static int[] segmentNumbers(File directory) {
+        String[] names = directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SUFFIX);
+            }
+        });
+        if (names == null) {
+            return new int[0];
+        }
+        int[] numbers = new int[names.length];
+        int count = 0;
+        for (String name : names) {
+            try {
+                numbers[count] = Integer.parseInt(
+                        name.substring(0, name.length() - SUFFIX.length()));
+                count++;
+            } catch (NumberFormatException e) {
+                // not a segment
+            }
+        }
+        numbers = Arrays.copyOf(numbers, count);
+        Arrays.sort(numbers);
+        return numbers;
+    }
+
+    // a reusable record body for each appending thread
+    private static class Scratch extends ByteArrayOutputStream {
+
+        private DataOutputStream out = new DataOutputStream(this);
+        private CRC32 crc = new CRC32();
+        private byte type;
+        private long gameId;
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Liveness of the connections. Every player is pinged each interval and
+ * the client echoes the ping, which also gives the round trip time. A
+ * player nothing was heard from for the timeout is taken for dead and its
+ * connection closed, so its lobby entry and game seat are freed, or its
+ * resume grace started, within seconds instead of waiting for a write to
+ * fail.
+ */
+public class Heartbeat {
+
+    private long interval;
+    private long timeout;
+    private AtomicLong deadPeers;
+
+    public Heartbeat(long intervalMillis, long timeoutMillis) {
+        this.interval = intervalMillis;
+        this.timeout = timeoutMillis;
+        this.deadPeers = new AtomicLong();
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    void deadPeer() {
+        deadPeers.incrementAndGet();
+    }
+
+    // connections closed for not answering
+    public long getDeadPeerCount() {
+        return deadPeers.get();
+    }
+}
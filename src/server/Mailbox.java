@@ -0,0 +1,84 @@
+package server;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Runs the tasks sent to it one at a time and in the order they were sent,
+ * on a pool shared by every mailbox. Whatever only its tasks touch needs no
+ * locking, and separate mailboxes run in parallel on all cores. A busy
+ * mailbox gives its thread up after a batch so others are not starved.
+ */
+public class Mailbox {
+
+    private final static int BATCH = 64;
+
+    private static ExecutorService executor;
+
+    private ConcurrentLinkedQueue<Runnable> tasks;
+    private AtomicBoolean scheduled;
+    private Runnable drainer;
+
+    public Mailbox() {
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.scheduled = new AtomicBoolean();
+        this.drainer = new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        };
+    }
+
+    public void send(Runnable task) {
+        tasks.add(task);
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            getExecutor().execute(drainer);
+        }
+    }
+
+    private void drain() {
+        for (int i = 0; i < BATCH; i++) {
+            Runnable task = tasks.poll();
+            if (task == null) {
+                break;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        scheduled.set(false);
+        // a task sent after the last poll, or the rest of a long queue
+        if (!tasks.isEmpty()) {
+            schedule();
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r,
+                                    "games-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return executor;
+    }
+}
@@ -2,21 +2,59 @@ package server;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import model.RoomListPlayer;
+import server.messages.EncodedMessage;
 import server.messages.MatchRoomListMessage;
+import server.messages.MatchRoomUpdateMessage;
 import server.messages.NotificationMessage;
 
+/*
+ * Players are indexed by key and by name in concurrent maps, so lookups
+ * never lock. Changes that involve two players lock the stripes of both
+ * keys, always in stripe order, and publishing the lobby list has its own
+ * monitor, so unrelated lobby actions run in parallel.
+ */
 public class MatchRoom {
 
-    private HashMap<String, Player> waitingPlayerList;
-    private ArrayList<Player> connectedPlayers;
+    private final static int LOCK_STRIPES = 64;
+    // how long players have to come back to a game recovered on startup
+    public final static int RECOVERY_TIMEOUT = 120000;
 
-    public MatchRoom() {
-        this.waitingPlayerList = new HashMap<String, Player>();
-        this.connectedPlayers = new ArrayList<>();
+    private ConcurrentHashMap<String, Player> waitingPlayerList;
+    private ConcurrentHashMap<String, Player> playersByKey;
+    private ConcurrentHashMap<String, Player> playersByName;
+    // logged in players by the token they can resume their session with
+    private ConcurrentHashMap<String, Player> sessions;
+    private Object[] locks;
+    // the in game status of every player as last sent to the lobby
+    private HashMap<String, Boolean> listedPlayers;
+    private int listVersion;
+    private EncodedMessage snapshot;
+    private int listUpdateDelay;
+    private boolean listUpdateScheduled;
+    private GameJournal journal;
+    // unfinished games from before a restart, by the names of their players
+    private ConcurrentHashMap<String, RecoveredGame> recoveredGames;
+
+    // lobby changes within listUpdateDelay milliseconds go out as one update
+    public MatchRoom(int listUpdateDelay, GameJournal journal) {
+        this.waitingPlayerList = new ConcurrentHashMap<>();
+        this.playersByKey = new ConcurrentHashMap<>();
+        this.playersByName = new ConcurrentHashMap<>();
+        this.sessions = new ConcurrentHashMap<>();
+        this.locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        this.listedPlayers = new HashMap<>();
+        this.listUpdateDelay = listUpdateDelay;
+        this.journal = journal;
+        this.recoveredGames = new ConcurrentHashMap<>();
     }
 
     public void parse(Player player, String[] args) {
@@ -57,10 +95,21 @@ public class MatchRoom {
             }
             break;
         case "boards":
+            // the version the watcher already has is optional
             if (args.length == 3) {
-                watchActualBoardStatusRequest(player, args[2]);
+                watchActualBoardStatusRequest(player, args[2], 0);
+            } else if (args.length == 4) {
+                try {
+                    watchActualBoardStatusRequest(player, args[2],
+                            Integer.parseInt(args[3]));
+                } catch (NumberFormatException e) {
+                    watchActualBoardStatusRequest(player, args[2], 0);
+                }
             }
         break;
+        case "list":
+            sendSnapshot(player);
+            break;
         case "reject":
             if (args.length == 3) {
                 rejectRequest(player, args[2]);
@@ -72,18 +121,18 @@ public class MatchRoom {
         }
     }
 
-    private synchronized void joinWaitingList(Player player) {
+    private void joinWaitingList(Player player) {
         waitingPlayerList.put(player.getOwnKey(), player);
         player.writeNotification(NotificationMessage.GAME_TOKEN,
                 player.getOwnKey());
         sendMatchRoomList();
     }
 
-    public synchronized void assignKey(Player player) {
+    public void assignKey(Player player) {
         player.setOwnKey(UUID.randomUUID().toString());
     }
 
-    private synchronized void joinRequest(Player player, String key) {
+    private void joinRequest(Player player, String key) {
         Player opponent = waitingPlayerList.get(key);
         if (player == opponent) {
             player.writeNotification(NotificationMessage.CANNOT_PLAY_YOURSELF);
@@ -92,7 +141,7 @@ public class MatchRoom {
         }
     }
 
-    private synchronized void watchRequest(Player player, String key) {
+    private void watchRequest(Player player, String key) {
         Player friend = waitingPlayerList.get(key);
         if (player == friend) {
             player.writeNotification(NotificationMessage.CANNOT_PLAY_YOURSELF);
@@ -102,44 +151,62 @@ public class MatchRoom {
         }
     }
 
-    private synchronized void watchActualBoardStatusRequest(Player player, String key) {
+    private void watchActualBoardStatusRequest(Player player, String key,
+            int version) {
         Player friend = waitingPlayerList.get(key);
         if (player == friend) {
             player.writeNotification(NotificationMessage.CANNOT_PLAY_YOURSELF);
         } else if (friend != null) {
             System.out.println("Request to get boards " + player.getPlayerName() + " by player " + friend.getPlayerName());
-            friend.askForBoards(player);
+            friend.askForBoards(player, version);
         }
     }
 
 
-    private synchronized void acceptRequest(Player player, String key, boolean isPublic) {
+    private void acceptRequest(Player player, String key, boolean isPublic) {
         Player opponent = waitingPlayerList.get(key);
-        if (opponent != null &&
-                opponent.getRequestedGameKey().equals(player.getOwnKey())) {
-            if(!isPublic) {
-                waitingPlayerList.remove(key);
-                waitingPlayerList.values().remove(player);
+        if (opponent == null) {
+            return;
+        }
+        int first = stripe(key);
+        int second = stripe(player.getOwnKey());
+        synchronized (locks[Math.min(first, second)]) {
+            synchronized (locks[Math.max(first, second)]) {
+                // a request is only accepted once, even by two players at once
+                if (!player.getOwnKey().equals(opponent.getRequestedGameKey())) {
+                    return;
+                }
+                if (!isPublic) {
+                    waitingPlayerList.remove(key, opponent);
+                    waitingPlayerList.remove(player.getOwnKey(), player);
+                }
+                opponent.requestAccepted(player);
+                new Game(opponent, player, isPublic, journal);
             }
-            opponent.requestAccepted(player);
-            new Game(opponent, player, isPublic);
-            sendMatchRoomList();
-            player.rejectAll();
-            opponent.rejectAll();
         }
+        sendMatchRoomList();
+        player.rejectAll();
+        opponent.rejectAll();
     }
 
-    private synchronized void rejectRequest(Player player, String key) {
+    private void rejectRequest(Player player, String key) {
         Player opponent = waitingPlayerList.get(key);
-        if (opponent != null &&
-                opponent.getRequestedGameKey().equals(player.getOwnKey())) {
-            opponent.requestRejected(player);
+        if (opponent != null) {
+            synchronized (locks[stripe(key)]) {
+                if (player.getOwnKey().equals(opponent.getRequestedGameKey())) {
+                    opponent.requestRejected(player);
+                }
+            }
         }
     }
 
-    private synchronized void cancelRequest(Player player) {
-        Player opponent = waitingPlayerList.get(player.getRequestedGameKey());
-        player.setRequestedGameKey(null);
+    private void cancelRequest(Player player) {
+        Player opponent;
+        synchronized (locks[stripe(player.getOwnKey())]) {
+            String key = player.getRequestedGameKey();
+            opponent = key == null ? null : waitingPlayerList.get(key);
+            player.setRequestedGameKey(null);
+        }
         if (opponent != null) {
             opponent.writeNotification(
                     NotificationMessage.JOIN_GAME_REQUEST_CANCELLED,
@@ -147,49 +214,212 @@ public class MatchRoom {
         }
     }
 
-    public synchronized void removeWaitingPlayer(Player player) {
-        waitingPlayerList.values().remove(player);
+    // the games wait for their players until RECOVERY_TIMEOUT
+    public void recoverGames(Iterable<RecoveredGame> games) {
+        for (final RecoveredGame game : games) {
+            recoveredGames.put(game.getPlayerName(1), game);
+            recoveredGames.put(game.getPlayerName(2), game);
+            TimerService.getInstance().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    expireRecoveredGame(game);
+                }
+            }, RECOVERY_TIMEOUT);
+        }
+    }
+
+    // called on login, the game resumes once both players are back
+    public void rejoinRecoveredGame(Player player) {
+        RecoveredGame recovered = recoveredGames.get(player.getPlayerName());
+        if (recovered == null || !recovered.arrive(player)) {
+            return;
+        }
+        recoveredGames.remove(recovered.getPlayerName(1), recovered);
+        recoveredGames.remove(recovered.getPlayerName(2), recovered);
+        Player player1 = recovered.getArrived(1);
+        Player player2 = recovered.getArrived(2);
+        System.out.println("Resuming game " + recovered.getId() + " of "
+                + player1.getPlayerName() + " and "
+                + player2.getPlayerName());
+        new Game(player1, player2, recovered, journal);
+        sendMatchRoomList();
+    }
+
+    // the player who came back wins, if neither did it is a draw
+    private void expireRecoveredGame(RecoveredGame recovered) {
+        if (!recovered.expire()) {
+            return;
+        }
+        recoveredGames.remove(recovered.getPlayerName(1), recovered);
+        recoveredGames.remove(recovered.getPlayerName(2), recovered);
+        journal.gameEnded(recovered.getId(), GameJournal.ABANDONED,
+                recovered.getWaitingSide());
+    }
+
+    public void removeWaitingPlayer(Player player) {
+        waitingPlayerList.remove(player.getOwnKey(), player);
         sendMatchRoomList();
     }
 
     public boolean playerNameExists(String name) {
-        for (Player player : connectedPlayers) {
-            if (name.equals(player.getPlayerName())) {
-                return true;
-            }
+        return playersByName.containsKey(name);
+    }
+
+    // false if another connection is already logged in under this name
+    public boolean claimName(String name, Player player) {
+        Player owner = playersByName.putIfAbsent(name, player);
+        if (owner != null && owner != player) {
+            return false;
+        }
+        String previous = player.getPlayerName();
+        if (previous != null && !previous.equals(name)) {
+            playersByName.remove(previous, player);
+        }
+        return true;
+    }
+
+    // gives a player who just logged in the token to resume the session with
+    // a new token replaces the player's earlier one
+    public void openSession(Player player) {
+        String previous = player.getResumeToken();
+        if (previous != null) {
+            sessions.remove(previous, player);
+        }
+        String token = UUID.randomUUID().toString();
+        sessions.put(token, player);
+        player.setResumeToken(token);
+    }
+
+    // a token is good for one resume, the session is then given a new one
+    public void resumeSession(Player front, String token, int version) {
+        Player session = sessions.remove(token);
+        if (session == null || !session.resume(front, version)) {
+            front.writeNotification(NotificationMessage.RESUME_FAILED);
         }
-        return false;
+    }
+
+    public void releaseName(String name, Player player) {
+        playersByName.remove(name, player);
+    }
+
+    public Player getPlayer(String key) {
+        return playersByKey.get(key);
+    }
+
+    private static int stripe(String key) {
+        return (key.hashCode() & 0x7fffffff) % LOCK_STRIPES;
     }
 
     public synchronized void sendMatchRoomList() {
-        HashMap<String, RoomListPlayer> matchRoomList = new HashMap<String, RoomListPlayer>();
+        if (listUpdateDelay <= 0) {
+            publishMatchRoomList();
+        } else if (!listUpdateScheduled) {
+            listUpdateScheduled = true;
+            TimerService.getInstance().schedule(new ListUpdateTask(),
+                    listUpdateDelay);
+        }
+    }
+
+    /*
+     * Compares the waiting players with what the lobby was last told and
+     * sends only the difference as a new list version. Players whose last
+     * seen version is not the one the difference starts from get a full
+     * snapshot instead. Both are encoded once for all recipients.
+     */
+    private synchronized void publishMatchRoomList() {
+        ArrayList<String> removed = new ArrayList<>();
+        HashMap<String, RoomListPlayer> changed = new HashMap<>();
+        Iterator<String> keys = listedPlayers.keySet().iterator();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!waitingPlayerList.containsKey(key)) {
+                keys.remove();
+                removed.add(key);
+            }
+        }
         for (Map.Entry<String, Player> entry : waitingPlayerList.entrySet()) {
             String key = entry.getKey();
             Player player = entry.getValue();
-            matchRoomList.put(key, new RoomListPlayer(player.isInGame() ?
-                            player.getPlayerName() + " (in game)" :
-                            player.getPlayerName(),
-                            player.avatar
-                    )
+            Boolean listedInGame = listedPlayers.get(key);
+            if (listedInGame == null) {
+                changed.put(key, new RoomListPlayer(listedName(player),
+                        player.avatar));
+            } else if (listedInGame != player.isInGame()) {
+                changed.put(key, new RoomListPlayer(listedName(player), null));
+            } else {
+                continue;
+            }
+            listedPlayers.put(key, player.isInGame());
+        }
+        EncodedMessage update = null;
+        int fromVersion = listVersion;
+        if (!removed.isEmpty() || !changed.isEmpty()) {
+            update = new EncodedMessage(new MatchRoomUpdateMessage(
+                    listVersion, listVersion + 1, removed, changed));
+            listVersion++;
+            snapshot = null;
+        }
+        for (Player player : waitingPlayerList.values()) {
+            if (player.isInGame() || player.getListVersion() == listVersion) {
+                continue;
+            }
+            if (update != null && player.getListVersion() == fromVersion) {
+                player.writeObject(update);
+            } else {
+                player.writeObject(getSnapshot());
+            }
+            player.setListVersion(listVersion);
+        }
+    }
+
+    // asked for by a client that missed an update
+    private synchronized void sendSnapshot(Player player) {
+        player.setListVersion(-1);
+        publishMatchRoomList();
+    }
 
-                    );
+    private EncodedMessage getSnapshot() {
+        if (snapshot == null) {
+            HashMap<String, RoomListPlayer> matchRoomList = new HashMap<>();
+            for (Map.Entry<String, Player> entry : waitingPlayerList.entrySet()) {
+                Player player = entry.getValue();
+                matchRoomList.put(entry.getKey(), new RoomListPlayer(
+                        listedName(player), player.avatar));
+            }
+            snapshot = new EncodedMessage(
+                    new MatchRoomListMessage(listVersion, matchRoomList));
         }
-        MatchRoomListMessage message = new MatchRoomListMessage(matchRoomList);
-        for (Map.Entry<String, Player> entry : waitingPlayerList.entrySet()) {
-            Player player = entry.getValue();
-            if(!player.isInGame())
-                player.writeObject(message);
+        return snapshot;
+    }
+
+    private static String listedName(Player player) {
+        return player.isInGame() ? player.getPlayerName() + " (in game)"
+                : player.getPlayerName();
+    }
+
+    private class ListUpdateTask implements Runnable {
+
+        @Override
+        public void run() {
+            synchronized (MatchRoom.this) {
+                listUpdateScheduled = false;
+                publishMatchRoomList();
+            }
         }
     }
 
     public void addPlayer(Player player) {
-        if (!connectedPlayers.contains(player)) {
-            connectedPlayers.add(player);
-        }
+        playersByKey.put(player.getOwnKey(), player);
     }
 
     public void removePlayer(Player player) {
-        connectedPlayers.remove(player);
+        playersByKey.remove(player.getOwnKey(), player);
+        if (player.getResumeToken() != null) {
+            sessions.remove(player.getResumeToken(), player);
+        }
+        if (player.getPlayerName() != null) {
+            playersByName.remove(player.getPlayerName(), player);
+        }
     }
 
 }
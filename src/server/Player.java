@@ -1,237 +1,401 @@
 package server;
 
 import model.Board;
+import server.messages.AvatarMessage;
 import server.messages.ChatMessage;
+import server.messages.HeartbeatMessage;
 import server.messages.MoveMessage;
 import server.messages.NotificationMessage;
+import server.net.Connection;
+import server.net.ConnectionListener;
 
-import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class Player extends Thread {
+public class Player implements ConnectionListener {
 
+    // hash of the avatar in the server's AvatarStore
     public String avatar;
-    private Socket socket;
+    // where messages are sent, a resumed session moves to the new connection
+    private volatile Connection connection;
+    // the connection this player was accepted on
+    private Connection accepted;
     private MatchRoom matchRoom;
-    private String login = null;
-    private ObjectOutputStream out;
-    private Game game;
-    private Board board;
-    private HashMap<String, Player> requestList;
+    private Authenticator authenticator;
+    private volatile boolean authenticating;
+    private volatile String login = null;
+    private volatile Game game;
+    private ConcurrentHashMap<String, Player> requestList;
     private String ownKey;
-    private String requestedGameKey;
-    private Timer inactivityTimer;
-
-    public final static int INACTIVITY_TIMEOUT = 600000;
-
-    public Player(Socket socket, MatchRoom matchRoom) {
-        this.socket = socket;
+    private volatile String requestedGameKey;
+    private Heartbeat heartbeat;
+    private volatile TimerService.Timeout heartbeatTimer;
+    // when anything was last received, pongs included
+    private volatile long lastReceived;
+    // smoothed round trip time of the pings, 0 until the first pong
+    private volatile long roundTripNanos;
+    private volatile boolean connected = true;
+    // set once the session is gone for good and can no longer be resumed
+    private boolean released;
+    private volatile String resumeToken;
+    // the session this connection resumed, its messages are handed on
+    private volatile Player resumedSession;
+    private TimerService.Timeout graceTimer;
+    private int listVersion = -1;
+
+    // how long a player who dropped out of a game can come back
+    public final static int RESUME_GRACE = 30000;
+
+    public Player(Connection connection, MatchRoom matchRoom,
+            Authenticator authenticator, Heartbeat heartbeat) {
+        this.connection = connection;
+        this.accepted = connection;
         this.matchRoom = matchRoom;
+        this.authenticator = authenticator;
         matchRoom.assignKey(this);
         matchRoom.addPlayer(this);
-        this.requestList = new HashMap<>();
-        System.out.println(socket.getRemoteSocketAddress().toString() +
+        this.requestList = new ConcurrentHashMap<>();
+        this.heartbeat = heartbeat;
+        this.lastReceived = System.currentTimeMillis();
+        this.heartbeatTimer = TimerService.getInstance().schedule(
+                new HeartbeatTask(), heartbeat.getInterval());
+        System.out.println(connection.getRemoteAddress() +
                 " connected with user key - " + ownKey);
     }
 
     @Override
-    public void run() {
-        super.run();
-        try {
-            out = new ObjectOutputStream(new BufferedOutputStream(
-                    socket.getOutputStream()));
-            out.flush();
-            ObjectInputStream in = new ObjectInputStream(
-                    socket.getInputStream());
-
-            Object input;
-
-            while ((input = in.readObject()) != null) {
-                this.refreshInavtivityTimer();
-
-                if (input instanceof String[]) {
-                    String[] array = (String[]) input;
-                    for(String a : array )
-                        System.out.println(a);
-
-                    int length = array.length;
-
-                    if (length > 0) {
-                        String message = array[0];
-
-                        switch (message) {
-                            case "join":
-                                if(login != null)
-                                    matchRoom.parse(this, array);
-                                break;
-                            case "login":
-                                if (length != 3 || array[1] == null ||
-                                        array[1].equals("")) {
-                                    writeNotification(NotificationMessage.INVALID_LOGIN_NAME);
-                                } else if (matchRoom.playerNameExists(array[1])) {
-                                    writeNotification(NotificationMessage.NAME_TAKEN);
-                                }else if(array[2] == null ||
-                                        array[2].equals("")){
-                                    writeNotification(NotificationMessage.PASSWORD_IS_INVALID);
-
-                                }else {
-                                    if(Server.checkUser(array[1],array[2])) {
-                                        login = array[1];
-                                        avatar = Server.getAvatar(login);
-                                        writeNotification(NotificationMessage.NAME_ACCEPTED);
-                                        matchRoom.sendMatchRoomList();
-                                        //send avatar
-                                    }else{
-                                        writeNotification(NotificationMessage.PASSWORD_IS_INVALID);
-                                    }
-                                }
-                                break;
-                            case "register":
-                                if (length != 4 || array[1] == null ||
-                                        array[1].equals("")) {
-                                    writeNotification(NotificationMessage.INVALID_LOGIN_NAME);
-                                }else if (Server.userExist(array[1])) {
-                                    writeNotification(NotificationMessage.NAME_TAKEN);
-                                }else{
-                                    Server.addUser(array[1],array[2]);
-                                    this.avatar = array[3];
-                                    Server.addAvatar(array[1], avatar);
-                                    login = array[1];
-                                    writeNotification(NotificationMessage.NAME_ACCEPTED);
-                                    matchRoom.sendMatchRoomList();
+    public void messageReceived(Object input) {
+        Player session = resumedSession;
+        if (session != null) {
+            session.messageReceived(input);
+            return;
+        }
+        lastReceived = System.currentTimeMillis();
+
+        if (input instanceof HeartbeatMessage) {
+            HeartbeatMessage ping = (HeartbeatMessage) input;
+            if (ping.isReply()) {
+                updateRoundTrip(System.nanoTime() - ping.getSent());
+            } else {
+                writeObject(new HeartbeatMessage(ping.getSent(), true));
+            }
+        } else if (input instanceof String[]) {
+            String[] array = (String[]) input;
+
+            int length = array.length;
+
+            if (length > 0) {
+                String message = array[0];
+                // only the command, the rest may be a password or a token
+                System.out.println(message);
+
+                switch (message) {
+                    case "join":
+                        if(login != null)
+                            matchRoom.parse(this, array);
+                        break;
+                    case "login":
+                        if (length != 3 || array[1] == null ||
+                                array[1].equals("")) {
+                            writeNotification(NotificationMessage.INVALID_LOGIN_NAME);
+                        } else if (matchRoom.playerNameExists(array[1])) {
+                            writeNotification(NotificationMessage.NAME_TAKEN);
+                        }else if(array[2] == null ||
+                                array[2].equals("")){
+                            writeNotification(NotificationMessage.PASSWORD_IS_INVALID);
+
+                        }else {
+                            final String name = array[1];
+                            final String password = array[2];
+                            authenticate(name, new Authenticator.Task() {
+                                @Override
+                                public boolean authenticate() {
+                                    return login(name, password);
                                 }
-                                break;
+                            });
                         }
-                    }
-                } else if (input instanceof Board && login != null) {
-                    Board board = (Board) input;
-                    if (Board.isValid(board) && game != null) {
-                        writeNotification(NotificationMessage.BOARD_ACCEPTED);
-                        this.board = board;
-                        game.checkBoards();
-                    } else if (game == null) {
-                        writeNotification(NotificationMessage.NOT_IN_GAME);
-                    } else {
-                        writeNotification(NotificationMessage.INVALID_BOARD);
-                    }
-                } else if (input instanceof MoveMessage && login != null){
-                    if (game != null) {
-                        game.applyMove((MoveMessage) input, this);
-                    }
-                } else if (input instanceof ChatMessage && login != null) {
-                    if (game != null) {
-                        Player opponent = game.getOpponent(this);
-                        if (opponent != null) {
-                            opponent.writeObject(input);
-                            ArrayList<Player> watchers = game.getPlayerWatchers(opponent);
-                            watchers.addAll(game.getPlayerWatchers(this));
-                            if (watchers != null)
-                                for(Player p :watchers){
-                                    p.writeObject(input);
+                        break;
+                    case "resume":
+                        // the token and the number of moves the client has
+                        if (length == 3 && login == null) {
+                            int version = 0;
+                            try {
+                                version = Integer.parseInt(array[2]);
+                            } catch (NumberFormatException e) {
+                                // resent from the start
+                            }
+                            matchRoom.resumeSession(this, array[1], version);
+                        }
+                        break;
+                    case "avatar":
+                        if (length == 2) {
+                            writeObject(new AvatarMessage(array[1],
+                                    Server.getAvatarStore().get(array[1])));
+                        }
+                        break;
+                    case "register":
+                        if (length != 4 || array[1] == null ||
+                                array[1].equals("")) {
+                            writeNotification(NotificationMessage.INVALID_LOGIN_NAME);
+                        }else if (Server.userExist(array[1])) {
+                            writeNotification(NotificationMessage.NAME_TAKEN);
+                        }else{
+                            final String name = array[1];
+                            final String password = array[2];
+                            final String image = array[3];
+                            authenticate(name, new Authenticator.Task() {
+                                @Override
+                                public boolean authenticate() {
+                                    return register(name, password, image);
                                 }
+                            });
                         }
-                    }
+                        break;
                 }
             }
-        } catch (java.net.SocketException e) {
-            if (game != null) {
-                leaveGame();
+        } else if (input instanceof Board && login != null) {
+            Board board = (Board) input;
+            Game game = this.game;
+            if (FleetValidator.isValid(board) && game != null) {
+                game.placeBoard(this, BitBoard.fromBoard(board));
+            } else if (game == null) {
+                writeNotification(NotificationMessage.NOT_IN_GAME);
             } else {
-                matchRoom.removeWaitingPlayer(this);
+                writeNotification(NotificationMessage.INVALID_BOARD);
+            }
+        } else if (input instanceof MoveMessage && login != null){
+            Game game = this.game;
+            if (game != null) {
+                game.applyMove((MoveMessage) input, this);
             }
-            matchRoom.removePlayer(this);
-            System.out.println(socket.getRemoteSocketAddress().toString() +
-                    " socket closed");
-        } catch (Exception e){
-            e.printStackTrace();
+        } else if (input instanceof ChatMessage && login != null) {
+            Game game = this.game;
             if (game != null) {
-                leaveGame();
+                game.relayChat(this, (ChatMessage) input);
+            }
+        }
+    }
+
+    @Override
+    public void connectionClosed(Exception cause) {
+        if (cause != null && !(cause instanceof IOException)) {
+            cause.printStackTrace();
+        }
+        Player session = resumedSession;
+        if (session != null) {
+            session.sessionClosed(accepted);
+        } else {
+            sessionClosed(accepted);
+        }
+    }
+
+    /*
+     * A player who drops out of a running game keeps their seat for
+     * RESUME_GRACE, everyone else is released at once. A connection that
+     * was already replaced by a resumed one changes nothing.
+     */
+    private void sessionClosed(Connection closed) {
+        Game game = this.game;
+        boolean release;
+        synchronized (this) {
+            if (closed != connection || released) {
+                return;
+            }
+            connected = false;
+            release = game == null || game.isEnded() || resumeToken == null;
+            if (release) {
+                released = true;
             } else {
-                matchRoom.removeWaitingPlayer(this);
+                graceTimer = TimerService.getInstance().schedule(
+                        new GraceTimerTask(), RESUME_GRACE);
             }
-            matchRoom.removePlayer(this);
+        }
+        System.out.println(closed.getRemoteAddress() + " socket closed, round"
+                + " trip " + roundTripNanos / 1000 + " us");
+        if (release) {
+            release();
+        } else {
+            game.dropped(this);
         }
     }
 
-    private synchronized void refreshInavtivityTimer(){
+    private void release() {
+        if (heartbeatTimer != null) {
+            heartbeatTimer.cancel();
+        }
+        if (game != null) {
+            leaveGame();
+        } else {
+            matchRoom.removeWaitingPlayer(this);
+        }
+        matchRoom.removePlayer(this);
+    }
 
-        if (inactivityTimer != null) {
-            inactivityTimer.cancel();
+    /*
+     * Moves this session onto the connection of front, which presented the
+     * session's token. The client is sent the moves after the version it
+     * has. False once the session was released or its game is over.
+     */
+    public boolean resume(Player front, int version) {
+        Connection previous;
+        Game game = this.game;
+        synchronized (this) {
+            if (released || game == null || game.isEnded()) {
+                return false;
+            }
+            previous = connection;
+            connection = front.connection;
+            connected = true;
+            lastReceived = System.currentTimeMillis();
+            front.resumedSession = this;
+            if (graceTimer != null) {
+                graceTimer.cancel();
+                graceTimer = null;
+            }
         }
-        inactivityTimer = new Timer();
-        inactivityTimer.schedule(new Player.InactivityTimerTask(), INACTIVITY_TIMEOUT);
+        // a connection that has not noticed it is dead yet is dropped
+        previous.close();
+        front.heartbeatTimer.cancel();
+        matchRoom.removePlayer(front);
+        System.out.println(front.accepted.getRemoteAddress() + " resumed "
+                + login + " from move " + version);
+        writeNotification(NotificationMessage.SESSION_RESUMED);
+        matchRoom.openSession(this);
+        game.resume(this, version);
+        return true;
     }
 
-    private synchronized void destroySelf(){
+    public void setResumeToken(String resumeToken) {
+        this.resumeToken = resumeToken;
+        writeNotification(NotificationMessage.SESSION_TOKEN, resumeToken);
+    }
 
-        if (inactivityTimer != null) {
-            inactivityTimer.cancel();
+    public String getResumeToken() {
+        return resumeToken;
+    }
+
+    // one attempt at a time, the next is ignored until this one is answered
+    private void authenticate(String name, final Authenticator.Task task) {
+        if (authenticating) {
+            return;
+        }
+        authenticating = true;
+        boolean submitted = authenticator.submit(this, name,
+                new Authenticator.Task() {
+                    @Override
+                    public boolean authenticate() {
+                        try {
+                            return task.authenticate();
+                        } finally {
+                            authenticating = false;
+                        }
+                    }
+                });
+        if (!submitted) {
+            authenticating = false;
         }
-        try {
-            socket.close();
-        } catch (Exception e) {
-            e.printStackTrace();
+    }
+
+    // these two run on the authentication pool
+    private boolean login(String name, String password) {
+        if (!Server.checkUser(name, password)) {
+            refuse(NotificationMessage.PASSWORD_IS_INVALID);
+            return false;
         }
-        if(game!=null) {
-            game.cancelTimers();
+        if (!matchRoom.claimName(name, this)) {
+            refuse(NotificationMessage.NAME_TAKEN);
+        } else if (acceptName(name)) {
+            matchRoom.sendMatchRoomList();
+            matchRoom.rejoinRecoveredGame(this);
         }
-        System.out.println("for Inactivity destroying " + this.login + " session on thread " + Thread.currentThread().getId());
-        Thread.currentThread().interrupt();
-        //Thread.currentThread().stop();
-        return;
+        return true;
+    }
+
+    private boolean register(String name, String password, String image) {
+        if (!Server.addUser(name, password, image)
+                || !matchRoom.claimName(name, this)) {
+            refuse(NotificationMessage.NAME_TAKEN);
+        } else if (acceptName(name)) {
+            matchRoom.sendMatchRoomList();
+        }
+        return true;
+    }
+
+    // lets the next attempt in first, the client may retry on reading this
+    private void refuse(int notification) {
+        authenticating = false;
+        writeNotification(notification);
+    }
+
+    /*
+     * Logs in under a name already claimed. The connection may have closed
+     * while the password was hashed, and removePlayer has then run before
+     * there was a name to remove, so the claim is given up here instead.
+     */
+    private boolean acceptName(String name) {
+        synchronized (this) {
+            if (!released) {
+                login = name;
+                avatar = Server.getAvatar(name);
+                writeNotification(NotificationMessage.NAME_ACCEPTED);
+                matchRoom.openSession(this);
+                return true;
+            }
+        }
+        matchRoom.releaseName(name, this);
+        return false;
+    }
+
+    // weighted like TCP's smoothed round trip time
+    private void updateRoundTrip(long sample) {
+        long smoothed = roundTripNanos;
+        roundTripNanos = smoothed == 0 ? sample
+                : smoothed + (sample - smoothed) / 8;
+    }
+
+    public long getRoundTripNanos() {
+        return roundTripNanos;
     }
 
     public boolean isInGame(){return this.game != null;}
 
-    public void setGame(Game game) {
+    // last lobby list version this player was sent, -1 for none
+    public int getListVersion() {
+        return listVersion;
+    }
+
+    public void setListVersion(int listVersion) {
+        this.listVersion = listVersion;
+    }
+
+    public synchronized void setGame(Game game) {
         this.game = game;
     }
 
+    // a game that ended only lets go of a player still in it
+    public synchronized void leftGame(Game game) {
+        if (this.game == game) {
+            this.game = null;
+        }
+    }
+
     public String getPlayerName() {
         return login;
     }
 
     public void writeMessage(String message) {
-        try {
-            out.writeObject(message);
-            out.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        connection.send(message);
     }
 
     public void writeObject(Object object) {
-        try {
-            out.writeObject(object);
-            out.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        connection.send(object);
     }
 
     public void writeNotification(int notificationMessage, String... text) {
-        try {
-            NotificationMessage nm = new NotificationMessage(
-                    notificationMessage, text);
-            out.writeObject(nm);
-            out.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        connection.send(new NotificationMessage(notificationMessage, text));
     }
 
 
-    public Board getBoard() {
-        return this.board;
-    }
-
     public synchronized void sendRequest(Player requester) {
         requestList.put(requester.getOwnKey(), requester);
         requester.requestedGameKey = this.ownKey;
@@ -255,6 +419,21 @@ public class Player extends Thread {
         this.ownKey = ownKey;
     }
 
+    // the remote host without the port, for throttling per address
+    public String getAddress() {
+        String address = connection.getRemoteAddress();
+        int port = address.lastIndexOf(':');
+        return port > 0 ? address.substring(0, port) : address;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public int getQueuedBytes() {
+        return connection.getQueuedBytes();
+    }
+
     public String getOwnKey() {
         return ownKey;
     }
@@ -273,30 +452,78 @@ public class Player extends Thread {
         }
     }
     public void leaveGame() {
+        Game game = this.game;
         if (game != null) {
-            Player opponent = game.getOpponent(this);
-            opponent.writeNotification(NotificationMessage.OPPONENT_DISCONNECTED);
-            game.killGame();
+            game.abandon(this);
         }
     }
 
-    private class InactivityTimerTask extends TimerTask {
+    /*
+     * Pings the client and closes a connection that has been silent for
+     * the heartbeat timeout. Keeps running while a dropped session waits to
+     * be resumed, and stops once it is released.
+     */
+    private class HeartbeatTask implements Runnable {
 
         @Override
         public void run() {
-            Player.this.writeNotification(NotificationMessage.PLAYER_INACTIVITY);
-
-            Player.this.destroySelf();
+            synchronized (Player.this) {
+                // a connection carrying a resumed session is its heartbeat's
+                if (released || resumedSession != null) {
+                    return;
+                }
+            }
+            if (connected) {
+                long silent = System.currentTimeMillis() - lastReceived;
+                if (silent >= heartbeat.getTimeout()) {
+                    heartbeat.deadPeer();
+                    System.out.println(connection.getRemoteAddress()
+                            + " silent for " + silent + " ms, closing");
+                    connection.close();
+                } else {
+                    writeObject(new HeartbeatMessage(System.nanoTime(),
+                            false));
+                }
+            }
+            heartbeatTimer = TimerService.getInstance().schedule(this,
+                    heartbeat.getInterval());
         }
+    }
 
+    private class GraceTimerTask implements Runnable {
+
+        @Override
+        public void run() {
+            synchronized (Player.this) {
+                if (connected || released) {
+                    return;
+                }
+                released = true;
+            }
+            System.out.println(login + " did not come back in time");
+            release();
+        }
     }
+
+    // the watcher is told when there is no game to watch
     public void addWatcher(Player player){
-        game.addPlayerWatcher(this,player);
+        Game game = this.game;
+        if (game != null) {
+            game.addPlayerWatcher(this, player);
+        } else {
+            player.writeNotification(NotificationMessage.GAME_NOT_FOUND);
+        }
     }
-    public void askForBoards(Player player){
-        game.giveWatcherBoards(this,player);
+    public void askForBoards(Player player, int version){
+        Game game = this.game;
+        if (game != null) {
+            game.giveWatcherBoards(this, player, version);
+        }
     }
     public void removeWatcher(Player player){
-        game.removePlayerWatcher(this,player);
+        Game game = this.game;
+        if (game != null) {
+            game.removePlayerWatcher(this, player);
+        }
     }
 }
@@ -0,0 +1,200 @@
+package server;
+
+import model.Board;
+import model.Ship;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/*
+ * A game the journal shows as started but never ended, rebuilt on startup
+ * so its players can finish it when they log in again. Only what a Game
+ * needs to continue is kept: the names, both fleets and the shots.
+ */
+public class RecoveredGame {
+
+    private final static int SIZE = Board.BOARD_DIMENSION;
+
+    private long id;
+    private String player1Name;
+    private String player2Name;
+    private boolean isPublic;
+    private BitBoard[] fleets;
+    // same encoding as Game's move log
+    private short[] moves;
+    private int moveCount;
+    // players that logged in again, by side
+    private Player[] arrived;
+    private boolean claimed;
+
+    private RecoveredGame(long id, String player1Name, String player2Name,
+            boolean isPublic) {
+        this.id = id;
+        this.player1Name = player1Name;
+        this.player2Name = player2Name;
+        this.isPublic = isPublic;
+        this.fleets = new BitBoard[2];
+        this.moves = new short[2 * SIZE * SIZE];
+        this.arrived = new Player[2];
+    }
+
+    /*
+     * Recovers the journal, which reads it once, and keeps the games that
+     * have not ended. Segments holding only finished games were deleted, so
+     * this reads the games still open and the segment being written, not
+     * every game ever played. A game whose last move sank the fleet but
+     * whose end was not written yet is ended here.
+     */
+    public static HashMap<Long, RecoveredGame> load(final GameJournal journal)
+            throws IOException {
+        final HashMap<Long, RecoveredGame> games = new HashMap<>();
+        journal.recover(new GameJournal.Handler() {
+            @Override
+            public void record(byte type, long gameId, long time,
+                    DataInputStream in) throws IOException {
+                RecoveredGame game = games.get(gameId);
+                switch (type) {
+                    case GameJournal.GAME_STARTED:
+                        games.put(gameId, new RecoveredGame(gameId,
+                                in.readUTF(), in.readUTF(), in.readBoolean()));
+                        break;
+                    case GameJournal.BOARD_PLACED:
+                        if (game != null) {
+                            game.readFleet(in);
+                        }
+                        break;
+                    case GameJournal.MOVE:
+                        if (game != null && game.moveCount < game.moves.length) {
+                            int player = in.readByte();
+                            int square = in.readUnsignedByte();
+                            game.moves[game.moveCount++] = (short) (square
+                                    + (player == 1 ? SIZE * SIZE : 0));
+                        }
+                        break;
+                    case GameJournal.GAME_ENDED:
+                        games.remove(gameId);
+                        break;
+                }
+            }
+        });
+        Iterator<RecoveredGame> iterator = games.values().iterator();
+        while (iterator.hasNext()) {
+            RecoveredGame game = iterator.next();
+            int winner = game.getWinner();
+            if (winner != 0) {
+                journal.gameEnded(game.id, GameJournal.FLEET_SUNK, winner);
+                iterator.remove();
+            }
+        }
+        return games;
+    }
+
+    private void readFleet(DataInputStream in) throws IOException {
+        int player = in.readByte();
+        int count = in.readUnsignedByte();
+        Ship.Type[] types = new Ship.Type[count];
+        boolean[] vertical = new boolean[count];
+        int[] first = new int[count];
+        for (int i = 0; i < count; i++) {
+            types[i] = Ship.Type.values()[in.readUnsignedByte()];
+            vertical[i] = in.readBoolean();
+            first[i] = in.readUnsignedByte();
+        }
+        if (player == 1 || player == 2) {
+            fleets[player - 1] = BitBoard.fromFleet(types, vertical, first);
+        }
+    }
+
+    // the side whose opponent's fleet was sunk, 0 while both still float
+    private int getWinner() {
+        if (fleets[0] == null || fleets[1] == null) {
+            return 0;
+        }
+        BitBoard board1 = getBoard(1);
+        BitBoard board2 = getBoard(2);
+        return board2.gameOver() ? 1 : board1.gameOver() ? 2 : 0;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getPlayerName(int side) {
+        return side == 1 ? player1Name : player2Name;
+    }
+
+    public boolean isPublic() {
+        return isPublic;
+    }
+
+    // the fleet of the side with the recovered shots applied, or null
+    public BitBoard getBoard(int side) {
+        BitBoard fleet = fleets[side - 1];
+        if (fleet == null) {
+            return null;
+        }
+        BitBoard board = fleet.replay(0);
+        for (int i = 0; i < moveCount; i++) {
+            boolean onPlayer2 = moves[i] >= SIZE * SIZE;
+            if (onPlayer2 == (side == 2)) {
+                int square = moves[i] % (SIZE * SIZE);
+                board.shoot(square % SIZE, square / SIZE);
+            }
+        }
+        return board;
+    }
+
+    public short[] getMoves() {
+        return Arrays.copyOf(moves, moveCount);
+    }
+
+    public int getSide(String name) {
+        return name.equals(player1Name) ? 1 : name.equals(player2Name) ? 2 : 0;
+    }
+
+    /*
+     * Records that the player is back. Returns true once both are, and only
+     * to the caller that completes the pair, which then starts the game.
+     */
+    public synchronized boolean arrive(Player player) {
+        int side = getSide(player.getPlayerName());
+        if (claimed || side == 0) {
+            return false;
+        }
+        arrived[side - 1] = player;
+        for (Player p : arrived) {
+            if (p == null || !p.isConnected() || p.isInGame()) {
+                return false;
+            }
+        }
+        claimed = true;
+        return true;
+    }
+
+    public Player getArrived(int side) {
+        return arrived[side - 1];
+    }
+
+    // true if the game was still waiting, it can then no longer start
+    public synchronized boolean expire() {
+        if (claimed) {
+            return false;
+        }
+        claimed = true;
+        return true;
+    }
+
+    // the side that came back in time and is still waiting, or 0
+    public synchronized int getWaitingSide() {
+        for (int side = 1; side <= 2; side++) {
+            Player p = arrived[side - 1];
+            if (p != null && p.isConnected() && !p.isInGame()) {
+                return side;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,223 @@
+package server;
+
+import server.messages.EncodedMessage;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Everything the watchers of one side of a game are sent. An event is
+ * encoded once into a ring and every watcher keeps its own position in it.
+ * A shared pool copies events to the watchers' outbound queues, so the game
+ * only pays for adding to the ring. A watcher whose queue is backed up is
+ * passed over until it catches up, and one that has fallen further behind
+ * than the ring holds is sent the moves it missed in one message and
+ * continues from the newest event.
+ *
+ * The ring is guarded by the game's monitor, which is also held while that
+ * message is built, so it always matches a position in the ring.
+ */
+public class SpectatorFeed {
+
+    private final static int CAPACITY = 256;
+    private final static int MAX_BACKLOG = 64 * 1024;
+    private final static long RETRY_MILLIS = 100;
+    private final static int DRAIN_THREADS = 2;
+
+    private static ExecutorService executor;
+
+    private final Object lock;
+    private Snapshot snapshot;
+    private EncodedMessage[] ring;
+    // game version after each event
+    private int[] versions;
+    // sequence number of the next event
+    private long head;
+    private ConcurrentHashMap<Player, Cursor> watchers;
+    private AtomicBoolean drainScheduled;
+    private final Object drainLock = new Object();
+
+    // both called with the lock held
+    public interface Snapshot {
+
+        int getVersion();
+
+        // the game from the given version up to now
+        Object build(int fromVersion);
+    }
+
+    public SpectatorFeed(Object lock, Snapshot snapshot) {
+        this.lock = lock;
+        this.snapshot = snapshot;
+        this.ring = new EncodedMessage[CAPACITY];
+        this.versions = new int[CAPACITY];
+        this.watchers = new ConcurrentHashMap<>();
+        this.drainScheduled = new AtomicBoolean();
+    }
+
+    public void publish(Object message) {
+        synchronized (lock) {
+            int slot = (int) (head % CAPACITY);
+            ring[slot] = message instanceof EncodedMessage
+                    ? (EncodedMessage) message : new EncodedMessage(message);
+            versions[slot] = snapshot.getVersion();
+            head++;
+        }
+        if (!watchers.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    // the watcher gets the events published from now on
+    public boolean add(Player watcher) {
+        synchronized (lock) {
+            return watchers.putIfAbsent(watcher,
+                    new Cursor(head, snapshot.getVersion())) == null;
+        }
+    }
+
+    public void remove(Player watcher) {
+        watchers.remove(watcher);
+    }
+
+    public boolean contains(Player watcher) {
+        return watchers.containsKey(watcher);
+    }
+
+    public Iterable<Player> getWatchers() {
+        return watchers.keySet();
+    }
+
+    /*
+     * Sends the watcher everything after the version it says it has, in
+     * order with the events around it. Version 0 means the whole game.
+     */
+    public void resync(Player watcher, int version) {
+        Cursor cursor = watchers.get(watcher);
+        if (cursor != null) {
+            cursor.resync = Math.max(0, version);
+            scheduleDrain();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    drainScheduled.set(false);
+                    drain();
+                }
+            });
+        }
+    }
+
+    private void drain() {
+        synchronized (drainLock) {
+            EncodedMessage[] events;
+            int[] eventVersions;
+            long end;
+            synchronized (lock) {
+                events = ring.clone();
+                eventVersions = versions.clone();
+                end = head;
+            }
+            // watchers missing the same moves share one message
+            HashMap<Integer, CatchUp> catchUps = new HashMap<>();
+            boolean retry = false;
+            Iterator<Map.Entry<Player, Cursor>> iterator =
+                    watchers.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Player, Cursor> entry = iterator.next();
+                Player watcher = entry.getKey();
+                Cursor cursor = entry.getValue();
+                if (!watcher.isConnected()) {
+                    iterator.remove();
+                    continue;
+                }
+                if (watcher.getQueuedBytes() > MAX_BACKLOG) {
+                    retry = true;
+                    continue;
+                }
+                int resync = cursor.resync;
+                if (resync >= 0 || end - cursor.next > CAPACITY) {
+                    int from = resync >= 0 ? resync : cursor.version;
+                    cursor.resync = -1;
+                    CatchUp catchUp = catchUps.get(from);
+                    if (catchUp == null) {
+                        catchUp = new CatchUp();
+                        synchronized (lock) {
+                            catchUp.message = new EncodedMessage(
+                                    snapshot.build(from));
+                            catchUp.position = head;
+                            catchUp.version = snapshot.getVersion();
+                        }
+                        catchUps.put(from, catchUp);
+                    }
+                    watcher.writeObject(catchUp.message);
+                    cursor.next = catchUp.position;
+                    cursor.version = catchUp.version;
+                }
+                // a catch up built after the copy may already cover them
+                for (; cursor.next < end; cursor.next++) {
+                    int slot = (int) (cursor.next % CAPACITY);
+                    watcher.writeObject(events[slot]);
+                    cursor.version = eventVersions[slot];
+                }
+            }
+            if (retry) {
+                TimerService.getInstance().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        scheduleDrain();
+                    }
+                }, RETRY_MILLIS);
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(DRAIN_THREADS,
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r,
+                                    "spectators-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return executor;
+    }
+
+    private static class Cursor {
+
+        // only touched by the drain
+        private long next;
+        private int version;
+        // version the watcher asked to be brought up from, -1 for none
+        private volatile int resync = -1;
+
+        Cursor(long next, int version) {
+            this.next = next;
+            this.version = version;
+        }
+    }
+
+    private static class CatchUp {
+
+        private EncodedMessage message;
+        private long position;
+        private int version;
+    }
+}
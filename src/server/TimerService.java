@@ -0,0 +1,198 @@
+package server;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * One hashed timing wheel for every deadline on the server. Scheduling and
+ * cancelling are O(1) and never start a thread; all tasks run on the single
+ * wheel thread, so they must not block.
+ */
+public class TimerService {
+
+    private final static long TICK_MILLIS = 100;
+    private final static int WHEEL_SIZE = 512;
+
+    private static TimerService instance;
+
+    private final long tickNanos = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+    private final long startTime;
+    private Bucket[] wheel;
+    private ConcurrentLinkedQueue<Timeout> scheduled;
+    private ConcurrentLinkedQueue<Timeout> cancelled;
+    private long tick;
+
+    private TimerService() {
+        this.wheel = new Bucket[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.scheduled = new ConcurrentLinkedQueue<>();
+        this.cancelled = new ConcurrentLinkedQueue<>();
+        this.startTime = System.nanoTime();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                TimerService.this.run();
+            }
+        }, "timer-wheel");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static synchronized TimerService getInstance() {
+        if (instance == null) {
+            instance = new TimerService();
+        }
+        return instance;
+    }
+
+    public Timeout schedule(Runnable task, long delayMillis) {
+        long deadline = System.nanoTime() - startTime
+                + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        Timeout timeout = new Timeout(task, deadline);
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    private void run() {
+        while (true) {
+            waitForNextTick();
+            removeCancelled();
+            transferScheduled();
+            wheel[(int) (tick & (WHEEL_SIZE - 1))].expire();
+            tick++;
+        }
+    }
+
+    // a timeout due in tick t is only run once tick t has fully passed
+    private void waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long now = System.nanoTime() - startTime;
+            long sleepMillis = (deadline - now + 999999) / 1000000;
+            if (sleepMillis <= 0) {
+                return;
+            }
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException ignored) {
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferScheduled() {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.state.get() == Timeout.CANCELLED) {
+                continue;
+            }
+            long expiryTick = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.remainingRounds = (expiryTick - tick) / WHEEL_SIZE;
+            wheel[(int) (expiryTick & (WHEEL_SIZE - 1))].add(timeout);
+        }
+    }
+
+    public class Timeout {
+
+        private final static int PENDING = 0;
+        private final static int CANCELLED = 1;
+        private final static int EXPIRED = 2;
+
+        private Runnable task;
+        private long deadline;
+        private long remainingRounds;
+        private AtomicInteger state;
+        private Timeout next;
+        private Timeout previous;
+        private Bucket bucket;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+            this.state = new AtomicInteger(PENDING);
+        }
+
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(PENDING, EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            }
+            if (timeout == head) {
+                head = timeout.next;
+            }
+            if (timeout == tail) {
+                tail = timeout.previous;
+            }
+            timeout.next = null;
+            timeout.previous = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package server;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/*
+ * Accounts and avatar images in one append-only file that is memory mapped.
+ * Every record is [int length][int crc][body]. Opening the store only walks
+ * the record headers to build the name and hash indexes, a lookup reads one
+ * record straight from the mapping, so reads never lock. A record with a bad
+ * checksum ends the log, which drops a write torn by a crash. When more than
+ * half the file is superseded records, or avatars no account uses because a
+ * registration lost the name to another or was cut off, it is compacted on
+ * open.
+ *
+ * Passwords are kept as salted PBKDF2 hashes.
+ */
+public class UserStore {
+
+    private final static int INITIAL_SIZE = 1 << 20;
+    private final static int HEADER = 8;
+    private final static byte USER = 1;
+    private final static byte AVATAR = 2;
+
+    private final static int SALT_LENGTH = 16;
+    private final static int HASH_LENGTH = 32;
+    private final static int HASH_ITERATIONS = 20000;
+
+    private File file;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+    // end of the last valid record, where the next one is appended
+    private int end;
+    private long deadBytes;
+    private ConcurrentHashMap<String, Integer> users;
+    private ConcurrentHashMap<String, Integer> avatars;
+    private SecureRandom random;
+
+    public UserStore(File file) throws IOException {
+        this.file = file;
+        this.random = new SecureRandom();
+        open();
+        if (deadBytes > end / 2) {
+            compact();
+        }
+    }
+
+    public boolean userExists(String name) {
+        return users.containsKey(name);
+    }
+
+    // runs the key derivation on the caller's thread, nothing is locked
+    public boolean checkUser(String name, String password) {
+        Integer offset = users.get(name);
+        if (offset == null || password == null) {
+            return false;
+        }
+        try {
+            DataInputStream in = read(offset);
+            in.readByte();
+            in.readUTF();
+            byte[] salt = new byte[SALT_LENGTH];
+            in.readFully(salt);
+            int iterations = in.readInt();
+            byte[] hash = new byte[HASH_LENGTH];
+            in.readFully(hash);
+            return MessageDigest.isEqual(hash,
+                    hashPassword(password, salt, iterations));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    public String getAvatarHash(String name) {
+        Integer offset = users.get(name);
+        if (offset == null) {
+            return null;
+        }
+        try {
+            DataInputStream in = read(offset);
+            in.readByte();
+            in.readUTF();
+            in.skipBytes(SALT_LENGTH + 4 + HASH_LENGTH);
+            String avatarHash = in.readUTF();
+            return avatarHash.isEmpty() ? null : avatarHash;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public boolean addUser(String name, String password, String avatarHash) {
+        if (users.containsKey(name)) {
+            return false;
+        }
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        byte[] hash = hashPassword(password, salt, HASH_ITERATIONS);
+        synchronized (this) {
+            if (users.containsKey(name)) {
+                return false;
+            }
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeByte(USER);
+                out.writeUTF(name);
+                out.write(salt);
+                out.writeInt(HASH_ITERATIONS);
+                out.write(hash);
+                out.writeUTF(avatarHash == null ? "" : avatarHash);
+                users.put(name, append(bytes.toByteArray()));
+                return true;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+    }
+
+    public byte[] getAvatar(String hash) {
+        Integer offset = hash == null ? null : avatars.get(hash);
+        if (offset == null) {
+            return null;
+        }
+        try {
+            DataInputStream in = read(offset);
+            in.readByte();
+            in.readUTF();
+            byte[] image = new byte[in.readInt()];
+            in.readFully(image);
+            return image;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public synchronized void putAvatar(String hash, byte[] image) {
+        if (avatars.containsKey(hash)) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(AVATAR);
+            out.writeUTF(hash);
+            out.writeInt(image.length);
+            out.write(image);
+            avatars.put(hash, append(bytes.toByteArray()));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void open() throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        long size = Math.max(channel.size(), INITIAL_SIZE);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(file + " is larger than 2 GB");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        users = new ConcurrentHashMap<>();
+        avatars = new ConcurrentHashMap<>();
+        end = 0;
+        deadBytes = 0;
+        HashSet<String> usedAvatars = new HashSet<>();
+        while (end + HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(end);
+            if (length <= 0 || end + HEADER + length > buffer.capacity()) {
+                break;
+            }
+            byte[] body = new byte[length];
+            ByteBuffer record = buffer.duplicate();
+            record.position(end + HEADER);
+            record.get(body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(end + 4)) {
+                System.out.println(file + ": dropping damaged records from "
+                        + end);
+                break;
+            }
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(body));
+            byte type = in.readByte();
+            ConcurrentHashMap<String, Integer> index = type == USER ? users
+                    : type == AVATAR ? avatars : null;
+            if (index != null) {
+                Integer previous = index.put(in.readUTF(), end);
+                if (previous != null) {
+                    deadBytes += HEADER + buffer.getInt(previous);
+                }
+            }
+            if (type == USER) {
+                in.skipBytes(SALT_LENGTH + 4 + HASH_LENGTH);
+                usedAvatars.add(in.readUTF());
+            }
+            end += HEADER + length;
+        }
+        for (Map.Entry<String, Integer> entry : avatars.entrySet()) {
+            if (!usedAvatars.contains(entry.getKey())) {
+                deadBytes += HEADER + buffer.getInt(entry.getValue());
+            }
+        }
+    }
+
+    private int append(byte[] body) throws IOException {
+        long needed = (long) end + HEADER + body.length + 4;
+        if (needed > Integer.MAX_VALUE) {
+            // offsets are ints and one mapping holds at most 2 GB
+            throw new IOException(file + " is full at " + end + " bytes");
+        }
+        if (needed > buffer.capacity()) {
+            long size = buffer.capacity();
+            while (size < needed) {
+                size = Math.min(size * 2, Integer.MAX_VALUE);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        int offset = end;
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset + 4);
+        record.putInt((int) crc.getValue());
+        record.put(body);
+        // a zero length after the last record ends the log when reading
+        record.putInt(0);
+        buffer.putInt(offset, body.length);
+        buffer.force();
+        end = offset + HEADER + body.length;
+        return offset;
+    }
+
+    private DataInputStream read(int offset) {
+        MappedByteBuffer mapped = buffer;
+        byte[] body = new byte[mapped.getInt(offset)];
+        ByteBuffer record = mapped.duplicate();
+        record.position(offset + HEADER);
+        record.get(body);
+        return new DataInputStream(new ByteArrayInputStream(body));
+    }
+
+    // rewrites the latest record of every user and the avatars they use
+    private synchronized void compact() throws IOException {
+        HashSet<String> usedAvatars = new HashSet<>();
+        for (String name : users.keySet()) {
+            String avatarHash = getAvatarHash(name);
+            if (avatarHash != null) {
+                usedAvatars.add(avatarHash);
+            }
+        }
+        File compacted = new File(file.getPath() + ".compact");
+        try (RandomAccessFile out = new RandomAccessFile(compacted, "rw")) {
+            out.setLength(0);
+            for (Map.Entry<String, Integer> entry : avatars.entrySet()) {
+                if (usedAvatars.contains(entry.getKey())) {
+                    copyRecord(entry.getValue(), out);
+                }
+            }
+            for (int offset : users.values()) {
+                copyRecord(offset, out);
+            }
+            out.getFD().sync();
+        }
+        long before = end;
+        /*
+         * The file cannot be replaced while it is mapped on some systems, so
+         * the mapping is let go first. If the move still fails the original
+         * file is opened again and the store carries on uncompacted.
+         */
+        channel.close();
+        randomAccessFile.close();
+        buffer = null;
+        try {
+            Files.move(compacted.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            compacted.delete();
+            open();
+            return;
+        }
+        open();
+        System.out.println(file + ": compacted " + before + " to " + end
+                + " bytes");
+    }
+
+    private void copyRecord(int offset, RandomAccessFile out)
+            throws IOException {
+        byte[] record = new byte[HEADER + buffer.getInt(offset)];
+        ByteBuffer source = buffer.duplicate();
+        source.position(offset);
+        source.get(record);
+        out.write(record);
+    }
+
+    private static byte[] hashPassword(String password, byte[] salt,
+            int iterations) {
+        try {
+            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt,
+                    iterations, HASH_LENGTH * 8);
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256")
+                    .generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package server.messages;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/*
+ * An avatar image sent on request. Avatars are identified by the SHA-256 of
+ * their PNG bytes, the lobby list only carries that hash.
+ */
+public class AvatarMessage implements Serializable {
+
+    private String hash;
+    private byte[] image;
+
+    // image is null when the server does not know the hash
+    public AvatarMessage(String hash, byte[] image) {
+        this.hash = hash;
+        this.image = image;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public byte[] getImage() {
+        return image;
+    }
+
+    public static String hash(byte[] image) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(image);
+            byte[] hex = new byte[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = (byte) Character.forDigit((digest[i] >> 4) & 0xF, 16);
+                hex[2 * i + 1] = (byte) Character.forDigit(digest[i] & 0xF, 16);
+            }
+            return new String(hex, StandardCharsets.US_ASCII);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static boolean isHash(String s) {
+        return s != null && s.matches("[0-9a-f]{64}");
+    }
+}
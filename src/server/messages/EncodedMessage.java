@@ -0,0 +1,37 @@
+package server.messages;
+
+import java.io.IOException;
+
+/*
+ * A message sent to many connections. Each protocol variant is encoded the
+ * first time a connection needs it and the same frame is then queued for
+ * every other recipient, so frames must never be modified once built.
+ */
+public class EncodedMessage {
+
+    private final Object message;
+    private volatile byte[] serializedFrame;
+    private volatile byte[] binaryFrame;
+
+    public EncodedMessage(Object message) {
+        this.message = message;
+    }
+
+    public Object getMessage() {
+        return message;
+    }
+
+    public byte[] frame(boolean binary) throws IOException {
+        byte[] frame = binary ? binaryFrame : serializedFrame;
+        if (frame == null) {
+            // two threads may both encode, either result is the same frame
+            frame = MessageCodec.frame(message, binary);
+            if (binary) {
+                binaryFrame = frame;
+            } else {
+                serializedFrame = frame;
+            }
+        }
+        return frame;
+    }
+}
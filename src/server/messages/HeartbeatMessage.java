@@ -0,0 +1,27 @@
+package server.messages;
+
+import java.io.Serializable;
+
+/*
+ * A ping carrying the sender's clock, or the reply echoing it back, so the
+ * sender can tell the round trip time. The time only means something to the
+ * side that sent the ping.
+ */
+public class HeartbeatMessage implements Serializable {
+
+    private long sent;
+    private boolean reply;
+
+    public HeartbeatMessage(long sent, boolean reply) {
+        this.sent = sent;
+        this.reply = reply;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public boolean isReply() {
+        return reply;
+    }
+}
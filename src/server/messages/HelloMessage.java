@@ -0,0 +1,16 @@
+package server.messages;
+
+import java.io.Serializable;
+
+public class HelloMessage implements Serializable {
+
+    private int version;
+
+    public HelloMessage(int version) {
+        this.version = version;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+}
@@ -7,12 +7,19 @@ import java.util.HashMap;
 
 public class MatchRoomListMessage implements Serializable {
 
+    private int version;
     private HashMap<String, RoomListPlayer> matchRoomList;
 
-    public MatchRoomListMessage(HashMap<String, RoomListPlayer> matchRoomList) {
+    public MatchRoomListMessage(int version,
+            HashMap<String, RoomListPlayer> matchRoomList) {
+        this.version = version;
         this.matchRoomList = matchRoomList;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
     public HashMap<String, RoomListPlayer> getMatchRoomList() {
         return this.matchRoomList;
     }
@@ -0,0 +1,44 @@
+package server.messages;
+
+import model.RoomListPlayer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/*
+ * Changes to the lobby list between two versions. Added players carry their
+ * avatar hash, a player whose status changed is sent with a null hash and
+ * keeps the one the client already has.
+ */
+public class MatchRoomUpdateMessage implements Serializable {
+
+    private int fromVersion;
+    private int toVersion;
+    private ArrayList<String> removed;
+    private HashMap<String, RoomListPlayer> changed;
+
+    public MatchRoomUpdateMessage(int fromVersion, int toVersion,
+            ArrayList<String> removed, HashMap<String, RoomListPlayer> changed) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.removed = removed;
+        this.changed = changed;
+    }
+
+    public int getFromVersion() {
+        return fromVersion;
+    }
+
+    public int getToVersion() {
+        return toVersion;
+    }
+
+    public ArrayList<String> getRemoved() {
+        return removed;
+    }
+
+    public HashMap<String, RoomListPlayer> getChanged() {
+        return changed;
+    }
+}
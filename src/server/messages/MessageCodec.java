@@ -0,0 +1,477 @@
+package server.messages;
+
+import model.Board;
+import model.RoomListPlayer;
+import model.Ship;
+import model.Square;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Every message on the wire is a frame: a 4 byte big-endian payload length
+ * followed by the payload. The first payload byte is a type tag. Messages
+ * without a binary layout, and every message of a peer that never sent
+ * HELLO, use the SERIALIZED tag followed by a Java serialized object. The
+ * server refuses SERIALIZED once HELLO has agreed on the binary protocol,
+ * and what it still deserializes goes through a filter that only lets the
+ * game's own classes, strings, arrays and java.util collections through.
+ */
+public class MessageCodec {
+
+    public final static int HEADER_LENGTH = 4;
+    public final static int MAX_FRAME_LENGTH = 1 << 20;
+
+    public final static int VERSION = 1;
+
+    public final static byte SERIALIZED = 0;
+    public final static byte HELLO = 1;
+    public final static byte COMMAND = 2;
+    public final static byte MOVE = 3;
+    public final static byte MOVE_RESPONSE = 4;
+    public final static byte NOTIFICATION = 5;
+    public final static byte CHAT = 6;
+    public final static byte MATCH_ROOM_LIST = 7;
+    public final static byte MATCH_ROOM_UPDATE = 8;
+    public final static byte AVATAR = 9;
+    public final static byte SPECTATOR_SYNC = 10;
+    public final static byte HEARTBEAT = 11;
+    public final static byte BOARD = 12;
+
+    private final static int HIT = 1;
+    private final static int OWN_BOARD = 2;
+    private final static int SHIP_SUNK = 4;
+
+    private final static String SERIAL_FILTER = "maxdepth=20;maxrefs=10000;"
+            + "maxarray=10000;maxbytes=" + MAX_FRAME_LENGTH + ";model.*;"
+            + "server.messages.*;java.util.*;java.lang.Object;"
+            + "java.lang.String;java.lang.Enum;java.lang.Number;"
+            + "java.lang.Integer;java.lang.Long;java.lang.Boolean;!*";
+    // the filter API is sun.misc on Java 8u121 and later, java.io from 9
+    private static Object serialFilter;
+    private static Method setSerialFilter;
+
+    static {
+        try {
+            Class<?> config = Class.forName("java.io.ObjectInputFilter$Config");
+            serialFilter = config.getMethod("createFilter", String.class)
+                    .invoke(null, SERIAL_FILTER);
+            setSerialFilter = ObjectInputStream.class.getMethod(
+                    "setObjectInputFilter",
+                    Class.forName("java.io.ObjectInputFilter"));
+        } catch (ReflectiveOperationException e) {
+            try {
+                Class<?> config = Class.forName(
+                        "sun.misc.ObjectInputFilter$Config");
+                serialFilter = config.getMethod("createFilter", String.class)
+                        .invoke(null, SERIAL_FILTER);
+                setSerialFilter = config.getMethod("setObjectInputFilter",
+                        ObjectInputStream.class,
+                        Class.forName("sun.misc.ObjectInputFilter"));
+            } catch (ReflectiveOperationException e2) {
+                System.out.println("No ObjectInputFilter in this runtime, "
+                        + "serialized messages are refused");
+            }
+        }
+    }
+
+    public static byte[] frame(Object message, boolean binary)
+            throws IOException {
+        if (message instanceof EncodedMessage) {
+            return ((EncodedMessage) message).frame(binary);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        if (message instanceof HelloMessage) {
+            out.writeByte(HELLO);
+            out.writeByte(((HelloMessage) message).getVersion());
+        } else if (!binary || !writeBinary(out, message)) {
+            out.writeByte(SERIALIZED);
+            ObjectOutputStream objectOut = new ObjectOutputStream(out);
+            objectOut.writeObject(message);
+            objectOut.flush();
+        }
+        byte[] frame = bytes.toByteArray();
+        int length = frame.length - HEADER_LENGTH;
+        if (length > MAX_FRAME_LENGTH) {
+            throw new IOException("Frame too long: " + length);
+        }
+        frame[0] = (byte) (length >>> 24);
+        frame[1] = (byte) (length >>> 16);
+        frame[2] = (byte) (length >>> 8);
+        frame[3] = (byte) length;
+        return frame;
+    }
+
+    private static boolean writeBinary(DataOutputStream out, Object message)
+            throws IOException {
+        if (message instanceof String[]) {
+            String[] command = (String[]) message;
+            out.writeByte(COMMAND);
+            writeVarInt(out, command.length);
+            for (String s : command) {
+                writeString(out, s);
+            }
+        } else if (message instanceof MoveMessage) {
+            MoveMessage move = (MoveMessage) message;
+            out.writeByte(MOVE);
+            out.writeShort(move.getX());
+            out.writeShort(move.getY());
+        } else if (message instanceof MoveResponseMessage) {
+            out.writeByte(MOVE_RESPONSE);
+            writeMoveResponse(out, (MoveResponseMessage) message);
+        } else if (message instanceof NotificationMessage) {
+            NotificationMessage notification = (NotificationMessage) message;
+            out.writeByte(NOTIFICATION);
+            out.writeShort(notification.getCode());
+            String[] text = notification.getText();
+            if (text == null) {
+                writeVarInt(out, 0);
+            } else {
+                writeVarInt(out, text.length + 1);
+                for (String s : text) {
+                    writeString(out, s);
+                }
+            }
+        } else if (message instanceof ChatMessage) {
+            ChatMessage chat = (ChatMessage) message;
+            out.writeByte(CHAT);
+            writeString(out, chat.getMessage());
+            writeString(out, chat.getWho());
+        } else if (message instanceof MatchRoomListMessage) {
+            HashMap<String, RoomListPlayer> list =
+                    ((MatchRoomListMessage) message).getMatchRoomList();
+            out.writeByte(MATCH_ROOM_LIST);
+            out.writeInt(((MatchRoomListMessage) message).getVersion());
+            writeRoomList(out, list);
+        } else if (message instanceof MatchRoomUpdateMessage) {
+            MatchRoomUpdateMessage update = (MatchRoomUpdateMessage) message;
+            out.writeByte(MATCH_ROOM_UPDATE);
+            out.writeInt(update.getFromVersion());
+            out.writeInt(update.getToVersion());
+            writeVarInt(out, update.getRemoved().size());
+            for (String key : update.getRemoved()) {
+                writeString(out, key);
+            }
+            writeRoomList(out, update.getChanged());
+        } else if (message instanceof AvatarMessage) {
+            AvatarMessage avatar = (AvatarMessage) message;
+            out.writeByte(AVATAR);
+            writeString(out, avatar.getHash());
+            byte[] image = avatar.getImage();
+            if (image == null) {
+                writeVarInt(out, 0);
+            } else {
+                writeVarInt(out, image.length + 1);
+                out.write(image);
+            }
+        } else if (message instanceof SpectatorSyncMessage) {
+            SpectatorSyncMessage sync = (SpectatorSyncMessage) message;
+            out.writeByte(SPECTATOR_SYNC);
+            out.writeInt(sync.getFromVersion());
+            out.writeInt(sync.getToVersion());
+            ArrayList<Ship> fleet = sync.getFleet();
+            if (fleet == null) {
+                writeVarInt(out, 0);
+            } else {
+                writeVarInt(out, fleet.size() + 1);
+                for (Ship ship : fleet) {
+                    writeShip(out, ship);
+                }
+            }
+            writeVarInt(out, sync.getMoves().size());
+            for (MoveResponseMessage move : sync.getMoves()) {
+                writeMoveResponse(out, move);
+            }
+        } else if (message instanceof HeartbeatMessage) {
+            HeartbeatMessage heartbeat = (HeartbeatMessage) message;
+            out.writeByte(HEARTBEAT);
+            out.writeLong(heartbeat.getSent());
+            out.writeBoolean(heartbeat.isReply());
+        } else if (message instanceof Board) {
+            // only the ships, the squares follow from them
+            ArrayList<Ship> ships = ((Board) message).getShips();
+            out.writeByte(BOARD);
+            writeVarInt(out, ships.size());
+            for (Ship ship : ships) {
+                writeShip(out, ship);
+            }
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static void writeRoomList(DataOutputStream out,
+            HashMap<String, RoomListPlayer> list) throws IOException {
+        writeVarInt(out, list.size());
+        for (Map.Entry<String, RoomListPlayer> entry : list.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue().getName());
+            writeString(out, entry.getValue().getAvatarHash());
+        }
+    }
+
+    private static void writeMoveResponse(DataOutputStream out,
+            MoveResponseMessage response) throws IOException {
+        Ship ship = response.shipSank();
+        int flags = (response.isHit() ? HIT : 0)
+                | (response.isOwnBoard() ? OWN_BOARD : 0)
+                | (ship != null ? SHIP_SUNK : 0);
+        out.writeByte(response.getX());
+        out.writeByte(response.getY());
+        out.writeByte(flags);
+        if (ship != null) {
+            writeShip(out, ship);
+        }
+    }
+
+    private static void writeShip(DataOutputStream out, Ship ship)
+            throws IOException {
+        out.writeByte(ship.getType().ordinal());
+        out.writeBoolean(ship.isVertical());
+        ArrayList<Square> squares = ship.getSquares();
+        out.writeByte(squares.size());
+        for (Square s : squares) {
+            out.writeByte(s.getX());
+            out.writeByte(s.getY());
+        }
+    }
+
+    public static Object decode(byte[] payload, int offset, int length)
+            throws IOException, ClassNotFoundException {
+        return decode(payload, offset, length, true);
+    }
+
+    // serialized is false once the peer has agreed on the binary protocol
+    public static Object decode(byte[] payload, int offset, int length,
+            boolean serialized) throws IOException, ClassNotFoundException {
+        if (length < 1) {
+            throw new IOException("Empty frame");
+        }
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(payload, offset + 1, length - 1));
+        byte tag = payload[offset];
+        switch (tag) {
+            case SERIALIZED:
+                if (!serialized) {
+                    throw new IOException("Serialized message after HELLO");
+                }
+                return objectInput(in).readObject();
+            case HELLO:
+                return new HelloMessage(in.readUnsignedByte());
+            case COMMAND:
+                String[] command = new String[readCount(in, 0)];
+                for (int i = 0; i < command.length; i++) {
+                    command[i] = readString(in);
+                }
+                return command;
+            case MOVE:
+                return new MoveMessage(in.readShort(), in.readShort());
+            case MOVE_RESPONSE:
+                return readMoveResponse(in);
+            case NOTIFICATION:
+                int code = in.readShort();
+                int count = readCount(in, 1);
+                if (count == 0) {
+                    return new NotificationMessage(code);
+                }
+                String[] text = new String[count - 1];
+                for (int i = 0; i < text.length; i++) {
+                    text[i] = readString(in);
+                }
+                return new NotificationMessage(code, text);
+            case CHAT:
+                return new ChatMessage(readString(in), readString(in));
+            case MATCH_ROOM_LIST:
+                int version = in.readInt();
+                return new MatchRoomListMessage(version, readRoomList(in));
+            case MATCH_ROOM_UPDATE:
+                int fromVersion = in.readInt();
+                int toVersion = in.readInt();
+                int removedCount = readCount(in, 0);
+                ArrayList<String> removed = new ArrayList<>(removedCount);
+                for (int i = 0; i < removedCount; i++) {
+                    removed.add(readString(in));
+                }
+                return new MatchRoomUpdateMessage(fromVersion, toVersion,
+                        removed, readRoomList(in));
+            case AVATAR:
+                String hash = readString(in);
+                int imageLength = readCount(in, 1);
+                byte[] image = null;
+                if (imageLength > 0) {
+                    image = new byte[imageLength - 1];
+                    in.readFully(image);
+                }
+                return new AvatarMessage(hash, image);
+            case SPECTATOR_SYNC:
+                int from = in.readInt();
+                int to = in.readInt();
+                int fleetSize = readCount(in, 1);
+                ArrayList<Ship> fleet = null;
+                if (fleetSize > 0) {
+                    fleet = new ArrayList<>(fleetSize - 1);
+                    for (int i = 0; i < fleetSize - 1; i++) {
+                        fleet.add(readShip(in));
+                    }
+                }
+                int moveCount = readCount(in, 0);
+                ArrayList<MoveResponseMessage> moves =
+                        new ArrayList<>(moveCount);
+                for (int i = 0; i < moveCount; i++) {
+                    moves.add(readMoveResponse(in));
+                }
+                return new SpectatorSyncMessage(from, to, fleet, moves);
+            case HEARTBEAT:
+                return new HeartbeatMessage(in.readLong(), in.readBoolean());
+            case BOARD:
+                Board board = new Board(true);
+                ArrayList<Ship> ships = board.getShips();
+                ships.clear();
+                int shipCount = readCount(in, 0);
+                for (int i = 0; i < shipCount; i++) {
+                    ships.add(readShip(in));
+                }
+                return board;
+            default:
+                throw new IOException("Unknown message tag: " + tag);
+        }
+    }
+
+    private static ObjectInputStream objectInput(InputStream in)
+            throws IOException {
+        if (setSerialFilter == null) {
+            throw new IOException("Serialized messages are not accepted");
+        }
+        ObjectInputStream objectIn = new ObjectInputStream(in);
+        try {
+            if (setSerialFilter.getParameterTypes().length == 1) {
+                setSerialFilter.invoke(objectIn, serialFilter);
+            } else {
+                setSerialFilter.invoke(null, objectIn, serialFilter);
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IOException(e);
+        }
+        return objectIn;
+    }
+
+    private static HashMap<String, RoomListPlayer> readRoomList(
+            DataInputStream in) throws IOException {
+        int size = readCount(in, 0);
+        HashMap<String, RoomListPlayer> list = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            list.put(key, new RoomListPlayer(readString(in), readString(in)));
+        }
+        return list;
+    }
+
+    private static MoveResponseMessage readMoveResponse(DataInputStream in)
+            throws IOException {
+        int x = in.readUnsignedByte();
+        int y = in.readUnsignedByte();
+        int flags = in.readUnsignedByte();
+        Ship ship = null;
+        if ((flags & SHIP_SUNK) != 0) {
+            ship = readShip(in);
+        }
+        return new MoveResponseMessage(x, y, ship, (flags & HIT) != 0,
+                (flags & OWN_BOARD) != 0);
+    }
+
+    private static Ship readShip(DataInputStream in) throws IOException {
+        Ship.Type[] types = Ship.Type.values();
+        int type = in.readUnsignedByte();
+        if (type >= types.length) {
+            throw new IOException("Unknown ship type: " + type);
+        }
+        Ship ship = new Ship(types[type]);
+        ship.setVertical(in.readBoolean());
+        int squares = in.readUnsignedByte();
+        for (int i = 0; i < squares; i++) {
+            ship.setSquare(new Square(in.readUnsignedByte(),
+                    in.readUnsignedByte(), false));
+        }
+        return ship;
+    }
+
+    // length is stored plus one so that zero can stand for null
+    private static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        if (s == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readCount(in, 1);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value)
+            throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /*
+     * A number of elements to read, each at least a byte long, so a count
+     * larger than what is left of the frame is refused before anything is
+     * allocated for it. Nullable lists are sent as count + 1, hence extra.
+     */
+    private static int readCount(DataInputStream in, int extra)
+            throws IOException {
+        int count = readVarInt(in);
+        if (count - extra > in.available()) {
+            throw new IOException("Count " + count + " exceeds frame");
+        }
+        return count;
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0 || value > MAX_FRAME_LENGTH) {
+                    throw new IOException("Invalid length: " + value);
+                }
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public static void checkLength(int length) throws IOException {
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package server.messages;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+
+public class MessageStream {
+
+    private Socket socket;
+    private DataInputStream in;
+    private OutputStream out;
+    private volatile boolean binary;
+    private volatile boolean helloSent;
+    // the side that sent HELLO first still takes serialized messages
+    private volatile boolean initiator;
+
+    public MessageStream(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(
+                socket.getInputStream()));
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    /*
+     * Offers the binary protocol and uses it straight away, since every
+     * server that answers HELLO speaks version 1 and refuses serialized
+     * messages after it.
+     */
+    public void hello() throws IOException {
+        helloSent = true;
+        initiator = true;
+        write(new HelloMessage(MessageCodec.VERSION));
+        binary = MessageCodec.VERSION >= 1;
+    }
+
+    public synchronized void write(Object message) throws IOException {
+        writeFrame(encode(message));
+        out.flush();
+    }
+
+    public byte[] encode(Object message) throws IOException {
+        return MessageCodec.frame(message, binary);
+    }
+
+    // frames are buffered until flush() so a batch costs one socket write
+    public synchronized void writeFrame(byte[] frame) throws IOException {
+        out.write(frame);
+    }
+
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    public Object read() throws IOException, ClassNotFoundException {
+        while (true) {
+            int length = in.readInt();
+            MessageCodec.checkLength(length);
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            Object message = MessageCodec.decode(payload, 0, length,
+                    initiator || !binary);
+            if (!(message instanceof HelloMessage)) {
+                return message;
+            }
+            int version = Math.min(MessageCodec.VERSION,
+                    ((HelloMessage) message).getVersion());
+            if (!helloSent) {
+                helloSent = true;
+                write(new HelloMessage(version));
+            }
+            binary = version >= 1;
+        }
+    }
+
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
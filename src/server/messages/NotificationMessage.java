@@ -15,12 +15,19 @@ public class NotificationMessage implements Serializable {
     public final static int TIMEOUT_LOSE = 204;
     public final static int TIMEOUT_DRAW = 205;
     public final static int OPPONENT_DISCONNECTED = 206;
+    public final static int OPPONENT_RECONNECTING = 207;
+    public final static int OPPONENT_RECONNECTED = 208;
 
     public final static int OPPONENTS_NAME = 301;
     public final static int PASSWORD_IS_INVALID = 302;
     public final static int NAME_TAKEN = 303;
     public final static int NAME_ACCEPTED = 304;
     public final static int INVALID_LOGIN_NAME = 305;
+    public final static int TOO_MANY_ATTEMPTS = 306;
+    public final static int SERVER_BUSY = 307;
+    public final static int SESSION_TOKEN = 308;
+    public final static int SESSION_RESUMED = 309;
+    public final static int RESUME_FAILED = 310;
 
     public final static int GAME_TOKEN = 401;
     public final static int GAME_NOT_FOUND = 402;
@@ -0,0 +1,44 @@
+package server.messages;
+
+import model.Ship;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/*
+ * Brings a spectator from one version of a game to another, a version being
+ * the number of moves played. From version 0 it also carries the fleet of
+ * the watched player, before the game has started it carries nothing. The
+ * moves are seen from the watched player's side.
+ */
+public class SpectatorSyncMessage implements Serializable {
+
+    private int fromVersion;
+    private int toVersion;
+    private ArrayList<Ship> fleet;
+    private ArrayList<MoveResponseMessage> moves;
+
+    public SpectatorSyncMessage(int fromVersion, int toVersion,
+            ArrayList<Ship> fleet, ArrayList<MoveResponseMessage> moves) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.fleet = fleet;
+        this.moves = moves;
+    }
+
+    public int getFromVersion() {
+        return fromVersion;
+    }
+
+    public int getToVersion() {
+        return toVersion;
+    }
+
+    public ArrayList<Ship> getFleet() {
+        return fleet;
+    }
+
+    public ArrayList<MoveResponseMessage> getMoves() {
+        return moves;
+    }
+}
@@ -0,0 +1,62 @@
+package server.net;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/*
+ * Threads per connection. With virtual threads the blocking reads and writes
+ * only park a continuation, so this stays cheap with many idle players.
+ * Virtual threads need a Java 21 runtime, older runtimes fall back to
+ * platform threads.
+ */
+public class BlockingServer {
+
+    private ServerSocket serverSocket;
+    private ConnectionAcceptor acceptor;
+    private Method startVirtualThread;
+
+    public BlockingServer(int port, boolean virtualThreads,
+            ConnectionAcceptor acceptor) throws IOException {
+        this.acceptor = acceptor;
+        this.serverSocket = new ServerSocket(port);
+        if (virtualThreads) {
+            try {
+                startVirtualThread = Thread.class.getMethod(
+                        "startVirtualThread", Runnable.class);
+            } catch (NoSuchMethodException e) {
+                System.out.println("Virtual threads are not supported by " +
+                        "this runtime, using platform threads");
+            }
+        }
+    }
+
+    public void run() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                StreamConnection connection = new StreamConnection(socket);
+                connection.setListener(acceptor.accept(connection));
+                start(connection, "player-" + connection.getRemoteAddress());
+                start(connection.getWriter(),
+                        "writer-" + connection.getRemoteAddress());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void start(Runnable task, String name) {
+        if (startVirtualThread != null) {
+            try {
+                startVirtualThread.invoke(null, task);
+                return;
+            } catch (ReflectiveOperationException e) {
+                e.printStackTrace();
+            }
+        }
+        new Thread(task, name).start();
+    }
+}
@@ -0,0 +1,13 @@
+package server.net;
+
+public interface Connection {
+
+    void send(Object message);
+
+    void close();
+
+    String getRemoteAddress();
+
+    // bytes sent but not yet handed to the socket
+    int getQueuedBytes();
+}
@@ -0,0 +1,6 @@
+package server.net;
+
+public interface ConnectionAcceptor {
+
+    ConnectionListener accept(Connection connection);
+}
@@ -0,0 +1,12 @@
+package server.net;
+
+public interface ConnectionListener {
+
+    void messageReceived(Object message);
+
+    /*
+     * Called exactly once. The cause is null when the peer closed the
+     * connection or it was closed locally.
+     */
+    void connectionClosed(Exception cause);
+}
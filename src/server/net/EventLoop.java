@@ -0,0 +1,66 @@
+package server.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+class EventLoop extends Thread {
+
+    private final static int READ_BUFFER_SIZE = 64 * 1024;
+
+    private Selector selector;
+    private ByteBuffer readBuffer;
+    private ConcurrentLinkedQueue<NioConnection> pendingRegistrations;
+    private ConcurrentLinkedQueue<NioConnection> pendingFlushes;
+
+    EventLoop(String name) throws IOException {
+        super(name);
+        this.selector = Selector.open();
+        this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        this.pendingRegistrations = new ConcurrentLinkedQueue<>();
+        this.pendingFlushes = new ConcurrentLinkedQueue<>();
+    }
+
+    void register(NioConnection connection) {
+        pendingRegistrations.add(connection);
+        selector.wakeup();
+    }
+
+    void requestFlush(NioConnection connection) {
+        pendingFlushes.add(connection);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (!isInterrupted()) {
+            try {
+                selector.select();
+                NioConnection connection;
+                while ((connection = pendingRegistrations.poll()) != null) {
+                    connection.register(selector);
+                }
+                while ((connection = pendingFlushes.poll()) != null) {
+                    connection.flush();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    connection = (NioConnection) key.attachment();
+                    if (key.isValid() && key.isReadable()) {
+                        connection.read(readBuffer);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush();
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
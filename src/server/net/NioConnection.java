@@ -0,0 +1,233 @@
+package server.net;
+
+import server.messages.HelloMessage;
+import server.messages.MessageCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class NioConnection implements Connection {
+
+    private final static int MAX_GATHERED_FRAMES = 64;
+
+    private SocketChannel channel;
+    private EventLoop loop;
+    private SelectionKey key;
+    private ConnectionListener listener;
+    private String remoteAddress;
+    // only holds the tail of a partially received frame, idle connections keep nothing
+    private ByteBuffer pending;
+    private OutboundQueue outbound;
+    // frames taken off the queue but not fully written yet, only touched by the loop
+    private ByteBuffer[] writing;
+    private int writingStart;
+    private int writingEnd;
+    private volatile boolean overflowed;
+    private AtomicBoolean flushScheduled;
+    private AtomicBoolean closed;
+    private volatile boolean binary;
+
+    NioConnection(SocketChannel channel, EventLoop loop) {
+        this.channel = channel;
+        this.loop = loop;
+        this.remoteAddress = String.valueOf(
+                channel.socket().getRemoteSocketAddress());
+        this.outbound = new OutboundQueue();
+        this.writing = new ByteBuffer[MAX_GATHERED_FRAMES];
+        this.flushScheduled = new AtomicBoolean();
+        this.closed = new AtomicBoolean();
+    }
+
+    void setListener(ConnectionListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void send(Object message) {
+        if (closed.get()) {
+            return;
+        }
+        try {
+            if (!outbound.offer(MessageCodec.frame(message, binary))) {
+                overflowed = true;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.requestFlush(this);
+        }
+    }
+
+    @Override
+    public void close() {
+        close(null);
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public int getQueuedBytes() {
+        return outbound.getQueuedBytes();
+    }
+
+    void register(Selector selector) {
+        try {
+            key = channel.register(selector, SelectionKey.OP_READ, this);
+        } catch (IOException e) {
+            close(e);
+            return;
+        }
+        if (!outbound.isEmpty()) {
+            flush();
+        }
+    }
+
+    void read(ByteBuffer scratch) {
+        try {
+            scratch.clear();
+            if (channel.read(scratch) < 0) {
+                close(null);
+                return;
+            }
+            scratch.flip();
+            ByteBuffer source = scratch;
+            if (pending != null) {
+                pending = ensureCapacity(pending, scratch.remaining());
+                pending.put(scratch);
+                pending.flip();
+                source = pending;
+            }
+            int needed = dispatchFrames(source);
+            if (closed.get()) {
+                return;
+            }
+            if (!source.hasRemaining()) {
+                pending = null;
+            } else if (source == pending && pending.capacity() >= needed) {
+                pending.compact();
+            } else {
+                ByteBuffer rest = ByteBuffer.allocate(
+                        Math.max(needed, source.remaining()));
+                rest.put(source);
+                pending = rest;
+            }
+        } catch (Exception e) {
+            close(e);
+        }
+    }
+
+    // returns the size of the incomplete frame left in the buffer
+    private int dispatchFrames(ByteBuffer buffer) throws Exception {
+        while (buffer.remaining() >= MessageCodec.HEADER_LENGTH) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            MessageCodec.checkLength(length);
+            int frameLength = MessageCodec.HEADER_LENGTH + length;
+            if (buffer.remaining() < frameLength) {
+                return frameLength;
+            }
+            Object message = MessageCodec.decode(buffer.array(),
+                    buffer.arrayOffset() + start + MessageCodec.HEADER_LENGTH,
+                    length, !binary);
+            buffer.position(start + frameLength);
+            if (message instanceof HelloMessage) {
+                helloReceived((HelloMessage) message);
+            } else {
+                listener.messageReceived(message);
+            }
+            if (closed.get()) {
+                return 0;
+            }
+        }
+        return MessageCodec.HEADER_LENGTH;
+    }
+
+    private void helloReceived(HelloMessage hello) {
+        int version = Math.min(MessageCodec.VERSION, hello.getVersion());
+        send(new HelloMessage(version));
+        binary = version >= 1;
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int extra) {
+        if (buffer.remaining() >= extra) {
+            return buffer;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(buffer.position() + extra);
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+    void flush() {
+        flushScheduled.set(false);
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        if (overflowed) {
+            System.out.println(remoteAddress + " is not reading, closing");
+            close(new IOException("Outbound queue full"));
+            return;
+        }
+        try {
+            while (true) {
+                if (writingStart == writingEnd && !takeFrames()) {
+                    break;
+                }
+                // everything queued since the last flush goes out in one write
+                channel.write(writing, writingStart, writingEnd - writingStart);
+                while (writingStart < writingEnd
+                        && !writing[writingStart].hasRemaining()) {
+                    writing[writingStart++] = null;
+                }
+                if (writingStart < writingEnd) {
+                    break;
+                }
+            }
+            int ops = writingStart == writingEnd ? SelectionKey.OP_READ
+                    : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+            if (key.interestOps() != ops) {
+                key.interestOps(ops);
+            }
+        } catch (Exception e) {
+            close(e);
+        }
+    }
+
+    private boolean takeFrames() {
+        writingStart = 0;
+        writingEnd = 0;
+        byte[] frame;
+        while (writingEnd < writing.length && (frame = outbound.poll()) != null) {
+            writing[writingEnd++] = ByteBuffer.wrap(frame);
+        }
+        return writingEnd > 0;
+    }
+
+    void close(Exception cause) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        outbound.clear();
+        pending = null;
+        if (listener != null) {
+            listener.connectionClosed(cause);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package server.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/*
+ * Accepts connections on the calling thread and spreads them over a fixed
+ * number of selector threads, so the thread count does not grow with the
+ * number of connected players.
+ */
+public class NioServer {
+
+    private ServerSocketChannel serverChannel;
+    private EventLoop[] loops;
+    private ConnectionAcceptor acceptor;
+    private int nextLoop;
+
+    public NioServer(int port, int loopCount, ConnectionAcceptor acceptor)
+            throws IOException {
+        this.acceptor = acceptor;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        this.loops = new EventLoop[Math.max(1, loopCount)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop("event-loop-" + i);
+            loops[i].start();
+        }
+    }
+
+    public void run() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                EventLoop loop = loops[nextLoop];
+                nextLoop = (nextLoop + 1) % loops.length;
+                NioConnection connection = new NioConnection(channel, loop);
+                connection.setListener(acceptor.accept(connection));
+                loop.register(connection);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
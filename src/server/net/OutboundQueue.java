@@ -0,0 +1,67 @@
+package server.net;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Encoded frames waiting to be written to one connection. Senders only ever
+ * enqueue, the connection's own writer drains the queue and writes
+ * everything that accumulated with a single flush. The queue is bounded by
+ * bytes so a client that stops reading cannot grow the server's heap.
+ */
+class OutboundQueue {
+
+    public final static int MAX_QUEUED_BYTES = 4 * 1024 * 1024;
+
+    private final static byte[] WAKE_UP = new byte[0];
+
+    private LinkedBlockingQueue<byte[]> frames;
+    private AtomicInteger queuedBytes;
+
+    OutboundQueue() {
+        this.frames = new LinkedBlockingQueue<>();
+        this.queuedBytes = new AtomicInteger();
+    }
+
+    // false when the peer is too far behind, the frame is then dropped
+    boolean offer(byte[] frame) {
+        if (queuedBytes.addAndGet(frame.length) > MAX_QUEUED_BYTES) {
+            queuedBytes.addAndGet(-frame.length);
+            return false;
+        }
+        frames.add(frame);
+        return true;
+    }
+
+    byte[] poll() {
+        byte[] frame = frames.poll();
+        if (frame != null) {
+            queuedBytes.addAndGet(-frame.length);
+        }
+        return frame;
+    }
+
+    // may return an empty frame after wakeUp()
+    byte[] take() throws InterruptedException {
+        byte[] frame = frames.take();
+        queuedBytes.addAndGet(-frame.length);
+        return frame;
+    }
+
+    void wakeUp() {
+        frames.add(WAKE_UP);
+    }
+
+    int getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    void clear() {
+        frames.clear();
+        queuedBytes.set(0);
+    }
+}
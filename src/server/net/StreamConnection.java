@@ -0,0 +1,106 @@
+package server.net;
+
+import server.messages.MessageStream;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Blocking connection driven by a reader and a writer thread per player, see
+ * BlockingServer. Senders only enqueue, so they never wait on this peer.
+ */
+class StreamConnection implements Connection, Runnable {
+
+    private Socket socket;
+    private MessageStream stream;
+    private ConnectionListener listener;
+    private String remoteAddress;
+    private OutboundQueue outbound;
+    private AtomicBoolean closed;
+
+    StreamConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.stream = new MessageStream(socket);
+        this.remoteAddress = String.valueOf(socket.getRemoteSocketAddress());
+        this.outbound = new OutboundQueue();
+        this.closed = new AtomicBoolean();
+    }
+
+    void setListener(ConnectionListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!closed.get()) {
+                listener.messageReceived(stream.read());
+            }
+        } catch (Exception e) {
+            close(e);
+        }
+    }
+
+    Runnable getWriter() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!closed.get()) {
+                        byte[] frame = outbound.take();
+                        do {
+                            stream.writeFrame(frame);
+                        } while ((frame = outbound.poll()) != null);
+                        stream.flush();
+                    }
+                } catch (InterruptedException e) {
+                    close(e);
+                } catch (IOException e) {
+                    close(e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void send(Object message) {
+        if (closed.get()) {
+            return;
+        }
+        try {
+            if (!outbound.offer(stream.encode(message))) {
+                // the reader notices the closed socket and cleans up
+                System.out.println(remoteAddress + " is not reading, closing");
+                stream.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void close() {
+        close(null);
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public int getQueuedBytes() {
+        return outbound.getQueuedBytes();
+    }
+
+    private void close(Exception cause) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        stream.close();
+        outbound.clear();
+        outbound.wakeUp();
+        listener.connectionClosed(cause);
+    }
+}
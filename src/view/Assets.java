@@ -0,0 +1,74 @@
+package view;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/*
+ * Every image the game views draw, read from resources once per process and
+ * converted to the screen's format so drawing it can be accelerated.
+ */
+public class Assets {
+
+    private static HashMap<String, Image> images = new HashMap<>();
+    private static List<Image> explosionFrames;
+
+    public static synchronized Image get(String path) throws IOException {
+        Image image = images.get(path);
+        if (image == null) {
+            image = load(new File(path));
+            images.put(path, image);
+        }
+        return image;
+    }
+
+    // the explosion animation frames in file name order
+    public static synchronized List<Image> getExplosionFrames() {
+        if (explosionFrames == null) {
+            ArrayList<Image> frames = new ArrayList<>();
+            File[] files = new File("resources/animation").listFiles();
+            if (files != null) {
+                Arrays.sort(files);
+                for (File file : files) {
+                    String filename = file.getName();
+                    if (filename.startsWith("explosion")
+                            && filename.endsWith(".png")) {
+                        try {
+                            frames.add(load(file));
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            }
+            explosionFrames = Collections.unmodifiableList(frames);
+        }
+        return explosionFrames;
+    }
+
+    private static Image load(File file) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException("Not an image: " + file);
+        }
+        if (GraphicsEnvironment.isHeadless()) {
+            return image;
+        }
+        GraphicsConfiguration configuration = GraphicsEnvironment
+                .getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration();
+        BufferedImage compatible = configuration.createCompatibleImage(
+                image.getWidth(), image.getHeight(), image.getTransparency());
+        Graphics2D g = compatible.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return compatible;
+    }
+}
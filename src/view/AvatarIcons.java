@@ -0,0 +1,109 @@
+package view;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/*
+ * Decoded and scaled avatar icons by avatar hash, shared by every view.
+ * Painting never decodes: a missing icon is decoded on a background thread
+ * and the component that asked for it is repainted once it is ready. The
+ * least recently used icons are dropped beyond MAX_ICONS.
+ */
+public class AvatarIcons {
+
+    public final static int SIZE = 40;
+    private final static int MAX_ICONS = 512;
+
+    private static AvatarIcons instance;
+
+    private LinkedHashMap<String, ImageIcon> icons;
+    private HashSet<String> loading;
+    private ExecutorService decoder;
+
+    private AvatarIcons() {
+        this.icons = new LinkedHashMap<String, ImageIcon>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ImageIcon> eldest) {
+                return size() > MAX_ICONS;
+            }
+        };
+        this.loading = new HashSet<>();
+        this.decoder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "avatar-decoder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public static synchronized AvatarIcons getInstance() {
+        if (instance == null) {
+            instance = new AvatarIcons();
+        }
+        return instance;
+    }
+
+    // null until the icon is decoded, component is then repainted
+    public synchronized ImageIcon get(final String hash, final byte[] image,
+            final Component component) {
+        if (hash == null || image == null) {
+            return null;
+        }
+        ImageIcon icon = icons.get(hash);
+        if (icon == null && loading.add(hash)) {
+            decoder.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ImageIcon decoded = decode(image);
+                    synchronized (AvatarIcons.this) {
+                        loading.remove(hash);
+                        if (decoded != null) {
+                            icons.put(hash, decoded);
+                        }
+                    }
+                    if (decoded != null && component != null) {
+                        EventQueue.invokeLater(new Runnable() {
+                            @Override
+                            public void run() {
+                                component.repaint();
+                            }
+                        });
+                    }
+                }
+            });
+        }
+        return icon;
+    }
+
+    private static ImageIcon decode(byte[] image) {
+        try {
+            BufferedImage source = ImageIO.read(new ByteArrayInputStream(image));
+            if (source == null) {
+                return null;
+            }
+            BufferedImage scaled = new BufferedImage(SIZE, SIZE,
+                    BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = scaled.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(source, 0, 0, SIZE, SIZE, null);
+            g.dispose();
+            return new ImageIcon(scaled);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
+import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.IOException;
@@ -24,6 +25,9 @@ public class BoardView extends JPanel implements PropertyChangeListener {
     private int xDistance;
     private int yDistance;
     private Board model;
+    // water and grid lines of all squares, drawn once
+    private Image waterLayer;
+    private FrameClock frameClock;
 
     public BoardView(boolean ownBoard) {
         this.model = new Board(ownBoard);
@@ -36,21 +40,30 @@ public class BoardView extends JPanel implements PropertyChangeListener {
         addMouseMotionListener(new MouseMotionAdapter() {
             @Override
             public void mouseMoved(MouseEvent e) {
+                SquareView previous = hoveredSquare;
                 resetHoveredSquare();
                 setHoveredSquare(e);
-                repaint();
+                if (hoveredSquare != previous) {
+                    repaintSquare(previous);
+                    repaintSquare(hoveredSquare);
+                }
             }
 
             @Override
             public void mouseDragged(MouseEvent e) {
-                updateSelectedShip(e);
-                repaint();
+                ShipView ship = getSelectedShip();
+                if (ship != null) {
+                    repaint(ship.getBounds());
+                    updateSelectedShip(e);
+                    repaint(ship.getBounds());
+                }
             }
         });
         addMouseListener(new MouseAdapter() {
             @Override
             public void mouseExited(MouseEvent e) {
                 resetHoveredSquare();
+                repaintSquare(hoveredSquare);
             }
 
             @Override
@@ -93,6 +106,25 @@ public class BoardView extends JPanel implements PropertyChangeListener {
         return model;
     }
 
+    // the clock of the window, or one of its own outside a ClientView
+    public FrameClock getFrameClock() {
+        if (frameClock == null) {
+            frameClock = new FrameClock();
+        }
+        return frameClock;
+    }
+
+    public void setFrameClock(FrameClock frameClock) {
+        this.frameClock = frameClock;
+    }
+
+    public void repaintSquare(SquareView square) {
+        if (square != null) {
+            repaint(square.getX(), square.getY(), SQUARE_WIDTH + 1,
+                    SQUARE_WIDTH + 1);
+        }
+    }
+
     private void setSelectedShipView(MouseEvent e) {
         int x = e.getX();
         int y = e.getY();
@@ -205,6 +237,7 @@ public class BoardView extends JPanel implements PropertyChangeListener {
             shipView.rotate();
         }
         shipViews.add(shipView);
+        repaint(shipView.getBounds());
     }
 
     private void addSquares() {
@@ -246,12 +279,26 @@ public class BoardView extends JPanel implements PropertyChangeListener {
         moveSelectedShip();
     }
 
+    /*
+     * Only what intersects the clip is painted, so a hover change or an
+     * explosion frame costs a square or two rather than the whole board.
+     */
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.drawImage(getWaterLayer(), 0, 0, null);
+        int first = Math.max(0, (clip.x - 1) / SQUARE_WIDTH);
+        int last = Math.min(BOARD_SIZE - 1, (clip.x + clip.width) / SQUARE_WIDTH);
+        int top = Math.max(0, (clip.y - 1) / SQUARE_WIDTH);
+        int bottom = Math.min(BOARD_SIZE - 1, (clip.y + clip.height) / SQUARE_WIDTH);
         ArrayList<SquareView> hit = new ArrayList<>();
-        for (SquareView[] row : squareViews) {
-            for (SquareView square : row) {
+        for (int i = first; i <= last; i++) {
+            for (int j = top; j <= bottom; j++) {
+                SquareView square = squareViews[i][j];
                 square.paint(g);
                 if (square.getState() == SquareView.HIT) {
                     hit.add(square);
@@ -259,7 +306,9 @@ public class BoardView extends JPanel implements PropertyChangeListener {
             }
         }
         for (ShipView s : shipViews) {
-            s.paint(g);
+            if (clip.intersects(s.getBounds())) {
+                s.paint(g);
+            }
         }
         for (SquareView square : hit) {
             if (square.animated()) {
@@ -270,6 +319,26 @@ public class BoardView extends JPanel implements PropertyChangeListener {
         }
     }
 
+    private Image getWaterLayer() {
+        if (waterLayer == null) {
+            int size = BOARD_SIZE * SQUARE_WIDTH + 1;
+            GraphicsConfiguration configuration = getGraphicsConfiguration();
+            waterLayer = configuration != null
+                    ? configuration.createCompatibleImage(size, size)
+                    : new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+            Graphics g = waterLayer.getGraphics();
+            g.setColor(getBackground());
+            g.fillRect(0, 0, size, size);
+            for (SquareView[] row : squareViews) {
+                for (SquareView square : row) {
+                    square.paintWater(g);
+                }
+            }
+            g.dispose();
+        }
+        return waterLayer;
+    }
+
     @Override
     public void propertyChange(PropertyChangeEvent evt) {
         if (evt.getPropertyName().equals("sankShip")) {
@@ -3,6 +3,7 @@ package view;
 import model.Client;
 import model.MatchRoom;
 import server.Game;
+import server.messages.MessageStream;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -12,8 +13,6 @@ import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 
 public class ClientView extends JFrame {
 
@@ -27,10 +26,10 @@ public class ClientView extends JFrame {
     private MatchRoom matchRoom;
     private JLabel timerView;
     private JLabel message;
-    private Timer timer;
+    private FrameClock frameClock = new FrameClock();
+    private FrameClock.Animation countdown;
 
-    public ClientView(ObjectOutputStream out, final ObjectInputStream in,
-                      final MatchRoom matchRoom) {
+    public ClientView(MessageStream stream, final MatchRoom matchRoom) {
         chat.setModel(chatModel);
 
         JPanel rootPanel = new JPanel(new BorderLayout(5, 5));
@@ -38,9 +37,11 @@ public class ClientView extends JFrame {
 
         final BoardView myBoard = new BoardView(true);
         final BoardView enemyBoard = new BoardView(false);
+        myBoard.setFrameClock(frameClock);
+        enemyBoard.setFrameClock(frameClock);
 
         model = new Client(this, myBoard.getModel(), enemyBoard.getModel(),
-                out, in);
+                stream);
         this.matchRoom = matchRoom;
 
         JPanel controlPanel = new JPanel(new BorderLayout(10, 5));
@@ -135,6 +136,7 @@ public class ClientView extends JFrame {
         addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosed(WindowEvent e) {
+                frameClock.dispose();
                 matchRoom.reopen();
             }
         });
@@ -142,8 +144,18 @@ public class ClientView extends JFrame {
     }
 
     public void stopTimer() {
-        if (timer != null) {
-            timer.stop();
+        if (!EventQueue.isDispatchThread()) {
+            EventQueue.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    stopTimer();
+                }
+            });
+            return;
+        }
+        if (countdown != null) {
+            frameClock.stop(countdown);
+            countdown = null;
         }
         timerView.setText("");
     }
@@ -153,22 +165,34 @@ public class ClientView extends JFrame {
     }
 
 
+    // only one countdown runs at a time, starting one replaces the last
     public void setTimer(final int seconds) {
-        timer = new Timer(1000, null);
-        timer.addActionListener(new ActionListener() {
-
-            private int secondsLeft = seconds;
-
+        if (!EventQueue.isDispatchThread()) {
+            EventQueue.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    setTimer(seconds);
+                }
+            });
+            return;
+        }
+        if (countdown != null) {
+            frameClock.stop(countdown);
+        }
+        final long end = FrameClock.now() + seconds * 1000L;
+        countdown = new FrameClock.Animation() {
             @Override
-            public void actionPerformed(ActionEvent e) {
-                --secondsLeft;
-                timerView.setText(Integer.toString(secondsLeft));
-                if (secondsLeft == 0) {
-                    timer.stop();
+            public long tick(long now) {
+                long left = Math.max(0, end - now);
+                timerView.setText(Long.toString((left + 999) / 1000));
+                if (left == 0) {
+                    return -1;
                 }
+                // wake up as the displayed second changes
+                return now + (left - 1) % 1000 + 1;
             }
-        });
-        timer.start();
+        };
+        frameClock.start(countdown);
     }
 
     public void sendChatMessage() {
@@ -1,55 +1,51 @@
 package view;
 
-import javax.imageio.ImageIO;
-import javax.swing.*;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.util.ArrayList;
+import java.awt.*;
+import java.util.List;
 
-public class ExplosionAnimation {
+public class ExplosionAnimation implements FrameClock.Animation {
+
+    // every frame is shown this long, the last one stays for 25 more steps
+    private final static int STEP_MILLIS = 10;
 
     private SquareView cell;
     private BoardView board;
-    private ArrayList<BufferedImage> images = new ArrayList<BufferedImage>();
+    private List<Image> images;
     private int currentIndex;
+    private long startTime = -1;
 
     public ExplosionAnimation(SquareView cell, BoardView board) {
-        File[] icons = new File("resources/animation").listFiles();
-        for (File file : icons) {
-            try {
-                String filename = file.getName();
-                if (filename.startsWith("explosion")
-                        && filename.endsWith(".png")) {
-                    images.add(ImageIO.read(file));
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
+        this.images = Assets.getExplosionFrames();
         this.cell = cell;
         this.board = board;
         currentIndex = 0;
         cell.setExplosionImage(images.get(currentIndex));
-        board.repaint();
+        board.repaintSquare(cell);
     }
 
     public void start() {
-        final Timer t = new Timer(10, null);
-        t.addActionListener(new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent event) {
-                currentIndex++;
-                if (currentIndex == images.size() + 25) {
-                    cell.setExplosionImage(null);
-                    t.stop();
-                } else if (currentIndex < images.size()) {
-                    cell.setExplosionImage(images.get(currentIndex));
-                }
-                board.repaint();
-            }
-        });
-        t.start();
+        board.getFrameClock().start(this);
+    }
+
+    @Override
+    public long tick(long now) {
+        if (startTime < 0) {
+            startTime = now;
+        }
+        int index = (int) ((now - startTime) / STEP_MILLIS);
+        if (index >= images.size() + 25) {
+            cell.setExplosionImage(null);
+            board.repaintSquare(cell);
+            return -1;
+        }
+        if (index != currentIndex && index < images.size()) {
+            currentIndex = index;
+            cell.setExplosionImage(images.get(currentIndex));
+            board.repaintSquare(cell);
+        }
+        if (index + 1 < images.size()) {
+            return startTime + (index + 1) * STEP_MILLIS;
+        }
+        return startTime + (images.size() + 25) * STEP_MILLIS;
     }
 }
@@ -0,0 +1,102 @@
+package view;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/*
+ * One clock per window that drives all of its animations and countdowns
+ * from a single Swing timer. Each animation says when it next needs a
+ * frame, the timer sleeps until the earliest of those and never fires more
+ * often than every FRAME_MILLIS. With nothing to animate it does not run.
+ */
+public class FrameClock implements ActionListener {
+
+    public final static int FRAME_MILLIS = 16;
+
+    public interface Animation {
+
+        // draws the frame for now, returns when the next frame is due or
+        // a negative value once the animation has finished
+        long tick(long now);
+    }
+
+    private Timer timer;
+    private ArrayList<Animation> animations;
+    private long nextTick = Long.MAX_VALUE;
+
+    public FrameClock() {
+        this.animations = new ArrayList<>();
+        this.timer = new Timer(FRAME_MILLIS, this);
+        this.timer.setRepeats(false);
+    }
+
+    public static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+    public void start(final Animation animation) {
+        if (!EventQueue.isDispatchThread()) {
+            EventQueue.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    start(animation);
+                }
+            });
+            return;
+        }
+        long now = now();
+        long due = animation.tick(now);
+        if (due >= 0) {
+            animations.add(animation);
+            schedule(now, due);
+        }
+    }
+
+    // stop() and dispose() must be called on the event dispatch thread
+    public void stop(Animation animation) {
+        animations.remove(animation);
+        if (animations.isEmpty()) {
+            timer.stop();
+            nextTick = Long.MAX_VALUE;
+        }
+    }
+
+    public void dispose() {
+        animations.clear();
+        timer.stop();
+        nextTick = Long.MAX_VALUE;
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        long now = now();
+        long next = Long.MAX_VALUE;
+        Iterator<Animation> it = animations.iterator();
+        while (it.hasNext()) {
+            long due = it.next().tick(now);
+            if (due < 0) {
+                it.remove();
+            } else {
+                next = Math.min(next, due);
+            }
+        }
+        nextTick = Long.MAX_VALUE;
+        if (!animations.isEmpty()) {
+            schedule(now, next);
+        }
+    }
+
+    private void schedule(long now, long due) {
+        due = Math.max(due, now + FRAME_MILLIS);
+        if (timer.isRunning() && nextTick <= due) {
+            return;
+        }
+        nextTick = due;
+        timer.setInitialDelay((int) (due - now));
+        timer.restart();
+    }
+}
@@ -209,6 +209,8 @@ public class MatchRoomView extends JFrame {
                         message = "You must choose a valid login name.";
                     } else if (state == MatchRoom.NameState.TAKEN) {
                         message = "This nickname already exists, please try again.";
+                    } else if (state == MatchRoom.NameState.BUSY) {
+                        message = "Too many attempts, please wait a moment and try again.";
                     }
                 }
             }
@@ -250,6 +252,8 @@ public class MatchRoomView extends JFrame {
                 message = "You must choose a valid login.";
             } else if (state == MatchRoom.NameState.TAKEN) {
                 message = "This login already exists, please try again.";
+            } else if (state == MatchRoom.NameState.BUSY) {
+                message = "Too many attempts, please wait a moment and try again.";
             }
         }
     }
@@ -271,8 +275,9 @@ public class MatchRoomView extends JFrame {
             String key = entry.getKey();
             if (!key.equals(matchRoom.getKey())) {
                 String name = entry.getValue().getName();
-                String avatar = entry.getValue().getImage();
-                RoomPlayer player = new RoomPlayer(key, name, avatar);
+                String avatarHash = entry.getValue().getAvatarHash();
+                RoomPlayer player = new RoomPlayer(key, name, avatarHash,
+                        matchRoom.getAvatars().get(avatarHash));
                 this.playersListModel.addElement(player);
             }
         }
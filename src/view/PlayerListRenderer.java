@@ -2,16 +2,16 @@ package view;
 
 import model.RoomPlayer;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
-import java.io.ByteArrayInputStream;
-import java.io.File;
-import java.io.IOException;
-import java.util.Base64;
+import java.awt.image.BufferedImage;
 
 public class PlayerListRenderer extends JLabel implements ListCellRenderer<RoomPlayer> {
 
+    // keeps rows the same height while an avatar is still being decoded
+    private final static Icon BLANK = new ImageIcon(new BufferedImage(
+            AvatarIcons.SIZE, AvatarIcons.SIZE, BufferedImage.TYPE_INT_ARGB));
+
     PlayerListRenderer() {
         setOpaque(true);
     }
@@ -20,16 +20,9 @@ public class PlayerListRenderer extends JLabel implements ListCellRenderer<RoomP
     public Component getListCellRendererComponent(JList<? extends RoomPlayer> list, RoomPlayer player, int index, boolean isSelected, boolean cellHasFocus) {
 
 
-        try {
-            byte[] avatarByteArray = Base64.getDecoder().decode(player.getAvatar());
-            ImageIcon avatar = new ImageIcon(ImageIO.read(new ByteArrayInputStream(avatarByteArray)));
-
-            setIcon(avatar);
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(null, "Some files have been deleted",
-                    "Fatal error", JOptionPane.ERROR_MESSAGE);
-            System.exit(-1);
-        }
+        ImageIcon avatar = AvatarIcons.getInstance().get(
+                player.getAvatarHash(), player.getAvatar(), list);
+        setIcon(avatar != null ? avatar : BLANK);
 
         setText(player.getName());
 
@@ -2,10 +2,8 @@ package view;
 
 import model.Ship;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
-import java.io.File;
 
 public class ShipView {
     private final int initialX;
@@ -31,8 +29,8 @@ public class ShipView {
 
         String filename = "resources/ships/" + model.getType().getName();
         try {
-            horizontalImage = ImageIO.read(new File(filename + ".png"));
-            verticalImage = ImageIO.read(new File(filename + "_v.png"));
+            horizontalImage = Assets.get(filename + ".png");
+            verticalImage = Assets.get(filename + "_v.png");
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Some files have been deleted",
                     "Fatal error", JOptionPane.ERROR_MESSAGE);
@@ -60,6 +58,13 @@ public class ShipView {
         this.y = y;
     }
 
+    // includes the selection highlight and the one pixel image overhang
+    public Rectangle getBounds() {
+        int width = horizontal ? length * cellSize : cellSize;
+        int height = horizontal ? cellSize : length * cellSize;
+        return new Rectangle(x, y, width + 1, height + 1);
+    }
+
     public boolean has(int x, int y) {
         if (horizontal) {
             return this.x <= x && x <= this.x + length * cellSize
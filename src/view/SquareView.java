@@ -2,12 +2,10 @@ package view;
 
 import model.Square;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import java.awt.*;
-import java.io.File;
 
 public class SquareView implements ChangeListener {
 
@@ -38,8 +36,8 @@ public class SquareView implements ChangeListener {
         this.squareModel = squareModel;
         squareModel.addChangeListener(this);
         try {
-            water = ImageIO.read(new File("resources/water/water.png"));
-            splash = ImageIO.read(new File("resources/water/splash.png"));
+            water = Assets.get("resources/water/water.png");
+            splash = Assets.get("resources/water/splash.png");
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null,
                     "Some files have been deleted.", "Fatal error",
@@ -74,11 +72,14 @@ public class SquareView implements ChangeListener {
         return explosionImage != null;
     }
 
-    public void paint(Graphics g) {
+    // the part that never changes, BoardView keeps it in a back buffer
+    public void paintWater(Graphics g) {
         g.drawImage(water, x, y, width, height, null);
         g.setColor(Color.BLACK);
         g.drawRect(x, y, width, height);
+    }
 
+    public void paint(Graphics g) {
         if (state == HOVER && !animated()) {
             g.setColor(Color.BLUE);
             g.fillRect(x, y, width, height);
@@ -118,7 +119,7 @@ public class SquareView implements ChangeListener {
                 new ExplosionAnimation(this, boardView).start();
             }
         }
-        boardView.repaint();
+        boardView.repaintSquare(this);
     }
 
 }